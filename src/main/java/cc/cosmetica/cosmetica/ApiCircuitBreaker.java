@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica;
+
+import cc.cosmetica.api.CosmeticaAPI;
+import cc.cosmetica.api.FatalServerErrorException;
+import cc.cosmetica.api.ServerResponse;
+import cc.cosmetica.cosmetica.utils.DebugMode;
+import cc.cosmetica.util.SafeURL;
+
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+
+/**
+ * Stops requests to the Cosmetica API while it is unreachable, so an outage doesn't cost a request (and a socket) for
+ * every lookup, safari, and settings sync.
+ *
+ * <p>Requests flow normally while the breaker is {@link State#CLOSED closed}. After {@code cosmetica.breakerThreshold}
+ * consecutive failures it {@link State#OPEN opens}, and requests fail immediately without contacting the API. Once the
+ * open period has elapsed, the next request is let through as a probe ({@link State#HALF_OPEN half open}): if it
+ * succeeds the breaker closes, otherwise (or if it takes longer than {@code cosmetica.breakerProbeTimeoutSeconds}) it
+ * opens again for twice as long, up to a maximum.</p>
+ *
+ * <p>Only failures to reach the API count: the connection failing, or the server erroring (5xx). An error the API
+ * answers with, such as an unknown user or a bad token, shows it is up.</p>
+ */
+public final class ApiCircuitBreaker {
+	private static final int FAILURE_THRESHOLD = Integer.parseInt(System.getProperty("cosmetica.breakerThreshold", "5"));
+	private static final long BASE_OPEN_MS = 1000L * Long.parseLong(System.getProperty("cosmetica.breakerOpenSeconds", "10"));
+	private static final long MAX_OPEN_MS = 1000L * 60 * 5;
+	private static final long PROBE_TIMEOUT_MS = 1000L * Long.parseLong(System.getProperty("cosmetica.breakerProbeTimeoutSeconds", "30"));
+	/**
+	 * Named by responses to rejected requests, if the API server hasn't been retrieved yet.
+	 */
+	private static final String DEFAULT_API_SERVER = "https://api.cosmetica.cc";
+
+	private static State state = State.CLOSED;
+	private static int consecutiveFailures = 0;
+	private static long openedAt;
+	private static long openFor = BASE_OPEN_MS;
+	private static long probeStartedAt;
+
+	/**
+	 * Make a request to the API through the breaker.
+	 * @param request the request to make.
+	 * @return the response, or a failed response with a {@link CircuitOpenException} if the breaker is open.
+	 */
+	public static <T> ServerResponse<T> call(Supplier<ServerResponse<T>> request) {
+		if (!tryAcquire()) {
+			return rejected();
+		}
+
+		ServerResponse<T> response;
+
+		try {
+			response = request.get();
+		} catch (RuntimeException e) {
+			if (isOutage(e)) onFailure(); else onSuccess();
+			throw e;
+		}
+
+		if (response.getException() != null && isOutage(response.getException())) {
+			onFailure();
+		} else {
+			onSuccess();
+		}
+
+		return response;
+	}
+
+	/**
+	 * @return whether the given exception means the API couldn't be reached, rather than it answering with an error.
+	 */
+	private static boolean isOutage(RuntimeException e) {
+		return e instanceof UncheckedIOException || e instanceof FatalServerErrorException;
+	}
+
+	/**
+	 * The response to a request rejected by the breaker. As nothing was requested, it names the API server rather than
+	 * a request URL.
+	 */
+	private static <T> ServerResponse<T> rejected() {
+		String server = CosmeticaAPI.getAPIServer();
+		return new ServerResponse<>(new CircuitOpenException(getRetryIn()), SafeURL.direct(server == null ? DEFAULT_API_SERVER : server));
+	}
+
+	/**
+	 * @return whether a request made now would be sent, rather than rejected by the breaker.
+	 */
+	public static synchronized boolean allowsRequests() {
+		return switch (state) {
+			case CLOSED -> true;
+			case OPEN -> System.currentTimeMillis() - openedAt >= openFor;
+			case HALF_OPEN -> probeTimedOut(); // otherwise, wait for the probe
+		};
+	}
+
+	public static synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the time, in ms, until requests will next be let through. 0 if the breaker is closed.
+	 */
+	public static synchronized long getRetryIn() {
+		return state == State.OPEN ? Math.max(0, openedAt + openFor - System.currentTimeMillis()) : 0;
+	}
+
+	private static synchronized boolean tryAcquire() {
+		switch (state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (System.currentTimeMillis() - openedAt < openFor) return false;
+
+			DebugMode.log("Probing the Cosmetica API");
+			state = State.HALF_OPEN;
+			probeStartedAt = System.currentTimeMillis();
+			return true;
+		default:
+			if (!probeTimedOut()) return false; // a probe is already in flight
+
+			// the probe is hanging. Count it as failed, and send this request as the next probe
+			DebugMode.log("Probe of the Cosmetica API timed out");
+			openFor = Math.min(openFor * 2, MAX_OPEN_MS);
+			probeStartedAt = System.currentTimeMillis();
+			return true;
+		}
+	}
+
+	private static boolean probeTimedOut() {
+		return System.currentTimeMillis() - probeStartedAt >= PROBE_TIMEOUT_MS;
+	}
+
+	private static synchronized void onSuccess() {
+		if (state != State.CLOSED) {
+			Cosmetica.LOGGER.info("Cosmetica API is reachable again.");
+		}
+
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		openFor = BASE_OPEN_MS;
+	}
+
+	private static synchronized void onFailure() {
+		if (state == State.HALF_OPEN) {
+			openFor = Math.min(openFor * 2, MAX_OPEN_MS);
+			open();
+		} else if (state == State.CLOSED && ++consecutiveFailures >= FAILURE_THRESHOLD) {
+			Cosmetica.LOGGER.warn("Cosmetica API requests failed {} times in a row. Pausing requests.", consecutiveFailures);
+			open();
+		}
+	}
+
+	private static void open() {
+		state = State.OPEN;
+		openedAt = System.currentTimeMillis();
+		DebugMode.log("Circuit breaker open for {}ms", openFor);
+	}
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	/**
+	 * Thrown (well, returned in a response) when a request is rejected because the breaker is open.
+	 */
+	public static class CircuitOpenException extends RuntimeException {
+		public CircuitOpenException(long retryIn) {
+			super("Cosmetica API is unreachable. Retrying in " + retryIn + "ms.");
+		}
+	}
+}
@@ -24,6 +24,7 @@ import cc.cosmetica.api.LoginInfo;
 import cc.cosmetica.api.ServerResponse;
 import cc.cosmetica.api.UserSettings;
 import cc.cosmetica.cosmetica.config.DefaultSettingsConfig;
+import cc.cosmetica.cosmetica.cosmetics.CachedUserInfo;
 import cc.cosmetica.cosmetica.cosmetics.PlayerData;
 import cc.cosmetica.cosmetica.screens.CosmeticaErrorScreen;
 import cc.cosmetica.cosmetica.screens.CustomiseCosmeticsScreen;
@@ -130,7 +131,7 @@ public class Authentication {
 				return; // sync settings is called after auth anyway
 			}
 
-			final ServerResponse<UserSettings> settings_ = Cosmetica.api.getUserSettings();
+			final ServerResponse<UserSettings> settings_ = ApiCircuitBreaker.call(Cosmetica.api::getUserSettings);
 
 			settings_.ifSuccessfulOrElse(settings -> {
 				DebugMode.log("Handling successful cosmetics settings response.");
@@ -323,7 +324,7 @@ public class Authentication {
 		boolean isWelcomeScreenAllowed = newPlayer && Cosmetica.mayShowWelcomeScreen();
 		DebugMode.log("Preparing potential welcome... || newPlayer=" + newPlayer + " mayShowWelcomeScreen=" + Cosmetica.mayShowWelcomeScreen());
 
-		Cosmetica.api.getUserInfo(uuid, name).ifSuccessfulOrElse(userInfo -> {
+		ApiCircuitBreaker.call(() -> Cosmetica.api.getUserInfo(uuid, name)).ifSuccessfulOrElse(userInfo -> {
 			final String colourlessLore = TextComponents.stripColour(userInfo.getLore());
 			DebugMode.log("Received user info on Authenticate/prepareWelcome || displayNext=" + Cosmetica.displayNext + " colourlessLore=" + colourlessLore + " show-welcome-message=" + Cosmetica.getConfig().showWelcomeMessage());
 
@@ -347,7 +348,7 @@ public class Authentication {
 //						((TitleScreenAccessorMixin) screen).setFading(false);
 //					}
 
-					Minecraft.getInstance().setScreen(new WelcomeScreen(screen, uuid, name, Cosmetica.newPlayerData(userInfo, uuid)));
+					Minecraft.getInstance().setScreen(new WelcomeScreen(screen, uuid, name, Cosmetica.newPlayerData(CachedUserInfo.of(userInfo), uuid)));
 				});
 			}
 		}, e -> {
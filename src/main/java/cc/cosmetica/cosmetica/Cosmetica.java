@@ -16,27 +16,31 @@
 
 package cc.cosmetica.cosmetica;
 
-import cc.cosmetica.api.Cape;
 import cc.cosmetica.api.CosmeticaAPI;
-import cc.cosmetica.api.CustomCape;
 import cc.cosmetica.api.Model;
-import cc.cosmetica.api.ShoulderBuddies;
 import cc.cosmetica.api.User;
-import cc.cosmetica.api.UserInfo;
 import cc.cosmetica.cosmetica.config.ArmourConflictHandlingMode;
 import cc.cosmetica.cosmetica.config.CosmeticaConfig;
 import cc.cosmetica.cosmetica.config.DefaultSettingsConfig;
+import cc.cosmetica.cosmetica.cosmetics.CachedUserInfo;
 import cc.cosmetica.cosmetica.cosmetics.CapeData;
 import cc.cosmetica.cosmetica.cosmetics.Hats;
+import cc.cosmetica.cosmetica.cosmetics.LookupBackoff;
+import cc.cosmetica.cosmetica.cosmetics.LookupCoalescer;
+import cc.cosmetica.cosmetica.cosmetics.LookupScheduler;
 import cc.cosmetica.cosmetica.cosmetics.PlayerData;
+import cc.cosmetica.cosmetica.cosmetics.PlayerDiskCache;
 import cc.cosmetica.cosmetica.cosmetics.model.BakableModel;
 import cc.cosmetica.cosmetica.cosmetics.model.Models;
 import cc.cosmetica.cosmetica.screens.LoadingScreen;
 import cc.cosmetica.cosmetica.screens.fakeplayer.Playerish;
 import cc.cosmetica.cosmetica.utils.DebugMode;
-import cc.cosmetica.cosmetica.utils.NamedThreadFactory;
+import cc.cosmetica.cosmetica.utils.PoseTransform;
+import cc.cosmetica.cosmetica.utils.SavedPose;
+import cc.cosmetica.cosmetica.utils.Scheduler;
 import cc.cosmetica.cosmetica.utils.SpecialKeyMapping;
 import cc.cosmetica.cosmetica.utils.TextComponents;
+import cc.cosmetica.cosmetica.utils.textures.FrameSheet;
 import cc.cosmetica.util.Response;
 import cc.cosmetica.util.SafeURL;
 import com.google.common.collect.Iterables;
@@ -72,6 +76,7 @@ import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.entity.EntityRenderDispatcher;
+import net.minecraft.locale.Language;
 import net.minecraft.core.Direction;
 import net.minecraft.network.chat.ClickEvent;
 import net.minecraft.network.chat.Component;
@@ -80,6 +85,7 @@ import net.minecraft.network.chat.TextComponent;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.PackType;
 import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.util.FormattedCharSequence;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.EquipmentSlot;
 import net.minecraft.world.entity.player.Player;
@@ -117,8 +123,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -145,10 +149,6 @@ public class Cosmetica implements ClientModInitializer {
 
 	public static final Logger LOGGER = LogManager.getLogger("Cosmetica");
 
-	private static final ExecutorService MAIN_POOL = Executors.newFixedThreadPool(
-			Integer.parseInt(System.getProperty("cosmetica.lookupThreads", "8")),
-			new NamedThreadFactory("Cosmetica Lookup Thread"));
-
 	private static CosmeticaConfig config;
 	private static DefaultSettingsConfig defaultSettingsConfig;
 	private static Path configDirectory;
@@ -237,10 +237,10 @@ public class Cosmetica implements ClientModInitializer {
 
 					DebugMode.log("Checking Version...");
 
-					api.checkVersion(
+					ApiCircuitBreaker.call(() -> api.checkVersion(
 							SharedConstants.getCurrentVersion().getId(),
 							FabricLoader.getInstance().getModContainer("cosmetica").get().getMetadata().getVersion().getFriendlyString()
-					).ifSuccessfulOrElse(versionInfo -> {
+					)).ifSuccessfulOrElse(versionInfo -> {
 						DebugMode.log("Handling version check response");
 
 						String s = versionInfo.minecraftMessage();
@@ -287,6 +287,13 @@ public class Cosmetica implements ClientModInitializer {
 			}
 		});
 
+		// load the index of user info cached in previous sessions. The info returned depends on the user's settings, so it is cached per account
+		PlayerDiskCache.load(cacheDirectory.resolve("player_cache_" + Minecraft.getInstance().getUser().getUuid() + ".bin"));
+
+		// reprioritise queued player lookups, and flush batched ones
+		Scheduler.scheduleRepeatable(Scheduler.Location.TEXTURE_TICK, LookupScheduler::tick);
+		Scheduler.scheduleRepeatable(Scheduler.Location.TEXTURE_TICK, LookupCoalescer::tick);
+
 		// Make nametag request for own profile on startup
 		// see comment in Cosmetica.forwardPublicUserInfoToNametag
 		GameProfile userProfile = Minecraft.getInstance().getUser().getGameProfile();
@@ -393,8 +400,10 @@ public class Cosmetica implements ClientModInitializer {
 	}
 
 	public static void onShutdownClient() {
+		PlayerDiskCache.saveOnShutdown();
+
 		try {
-			MAIN_POOL.shutdownNow();
+			LookupScheduler.shutdown();
 		} catch (RuntimeException e) { // Just in case.
 			e.printStackTrace();
 		}
@@ -433,7 +442,10 @@ public class Cosmetica implements ClientModInitializer {
 		if (api != null && api.isAuthenticated()) {
 			DebugMode.log("Thread for safari {}", Thread.currentThread().getName());
 
-			api.everyThirtySecondsInAfricaHalfAMinutePasses(prideRock, yourFirstRodeo || !Cosmetica.toto.isPresent() ? 0 : Cosmetica.toto.getAsLong())
+			// on the first rodeo, ask for everything updated since the disk cache was last written, so we know what in it is stale
+			long since = yourFirstRodeo || !Cosmetica.toto.isPresent() ? PlayerDiskCache.getTimestamp() : Cosmetica.toto.getAsLong();
+
+			ApiCircuitBreaker.call(() -> api.everyThirtySecondsInAfricaHalfAMinutePasses(prideRock, since))
 					.ifSuccessfulOrElse(theLionSleepsTonight -> {
 						// the speech from the lion king
 						for (String notification : theLionSleepsTonight.getNotifications()) { // let's hope I made sure this isn't null
@@ -449,6 +461,13 @@ public class Cosmetica implements ClientModInitializer {
 
 						Cosmetica.toto = OptionalLong.of(theLionSleepsTonight.getTimestamp());
 
+						for (User individual : theLionSleepsTonight.getNeedsUpdating()) {
+							PlayerDiskCache.invalidate(individual.getUUID());
+							LookupBackoff.forget(individual.getUUID());
+						}
+
+						PlayerDiskCache.setTimestamp(theLionSleepsTonight.getTimestamp());
+
 						if (!yourFirstRodeo) {
 							DebugMode.log("Processing updates found on the safari.");
 
@@ -457,7 +476,7 @@ public class Cosmetica implements ClientModInitializer {
 								DebugMode.log("Your amazing lion king with expected uuid {} seems to be requesting we update his (or her, their, faer, ...) cosmetics! :lion:", uuid);
 
 								if (PlayerData.has(uuid)) {
-									PlayerData.clear(uuid);
+									PlayerData.markStale(uuid);
 
 									// if ourselves, refresh asap
 									if (!ignoreSelf && uuid.equals(Minecraft.getInstance().player.getUUID())) {
@@ -474,10 +493,12 @@ public class Cosmetica implements ClientModInitializer {
 
 									if (info != null) {
 										UUID serverUuid = info.getProfile().getId();
+										PlayerDiskCache.invalidate(serverUuid);
+										LookupBackoff.forget(serverUuid);
 
 										if (PlayerData.has(serverUuid)) {
 											DebugMode.log("Found them :). They were hiding at uuid {}", serverUuid);
-											PlayerData.clear(serverUuid);
+											PlayerData.markStale(serverUuid);
 
 											// if ourselves, refresh asap
 											if (!ignoreSelf && username.equals(String.valueOf(Minecraft.getInstance().player.getName()))) {
@@ -566,7 +587,7 @@ public class Cosmetica implements ClientModInitializer {
 		if (Thread.currentThread().getName().startsWith("Cosmetica")) { // if already on a cosmetica worker
 			runnable.run();
 		} else {
-			MAIN_POOL.execute(runnable);
+			LookupScheduler.execute(runnable);
 		}
 	}
 
@@ -596,37 +617,31 @@ public class Cosmetica implements ClientModInitializer {
 		return "";
 	}
 
-	public static PlayerData newPlayerData(UserInfo info, UUID uuid) {
-		List<Model> hats = info.getHats();
-		Optional<ShoulderBuddies> shoulderBuddies = info.getShoulderBuddies();
-		Optional<Model> backBling = info.getBackBling();
-		Optional<Cape> cloak = info.getCape();
-		String icon = info.getIcon();
+	public static PlayerData newPlayerData(CachedUserInfo info, UUID uuid) {
+		CachedUserInfo.CachedCape cloak = info.cape();
+		String icon = info.icon();
 		boolean isSelf = uuid.toString().equals(Cosmetica.dashifyUUID(Minecraft.getInstance().getUser().getUuid()));
 
-		Optional<Model> leftShoulderBuddy = shoulderBuddies.isEmpty() ? Optional.empty() : shoulderBuddies.get().getLeft();
-		Optional<Model> rightShoulderBuddy = shoulderBuddies.isEmpty() ? Optional.empty() : shoulderBuddies.get().getRight();
-
 		return new PlayerData(
-				info.getLore(),
-				info.isUpsideDown(),
+				info.lore(),
+				info.upsideDown(),
 				icon.isEmpty() ? null : CosmeticaSkinManager.processIcon(icon),
-				info.isOnline() || isSelf, // we are always online ourselves. we are literally using the mod
-				info.getPrefix(),
-				info.getSuffix(),
-				hats.stream().map(Models::createBakableModel).collect(Collectors.toList()),
-				cloak.isPresent() ? new CapeData(
-						CosmeticaSkinManager.processCape(cloak.get()),
-						pickFirst(cloak.get().getName(), cloak.get().getOrigin() + " Cape"),
-						cloak.get().getId(),
-						!cloak.get().isCosmeticaAlternative() && !(cloak.get() instanceof CustomCape),
-						cloak.get().getOrigin()
+				info.online() || isSelf, // we are always online ourselves. we are literally using the mod
+				info.prefix(),
+				info.suffix(),
+				info.hats().stream().map(Models::createBakableModel).collect(Collectors.toList()),
+				cloak != null ? new CapeData(
+						CosmeticaSkinManager.processCape(cloak),
+						pickFirst(cloak.name(), cloak.origin() + " Cape"),
+						cloak.id(),
+						cloak.thirdParty(),
+						cloak.origin()
 				) : CapeData.NO_CAPE,
-				leftShoulderBuddy.isEmpty() ? null : Models.createBakableModel(leftShoulderBuddy.get()),
-				rightShoulderBuddy.isEmpty() ? null : Models.createBakableModel(rightShoulderBuddy.get()),
-				backBling.isEmpty() ? null : Models.createBakableModel(backBling.get()),
-				CosmeticaSkinManager.processSkin(info.getSkin(), uuid),
-				info.isSlim()
+				info.leftShoulderBuddy() == null ? null : Models.createBakableModel(info.leftShoulderBuddy()),
+				info.rightShoulderBuddy() == null ? null : Models.createBakableModel(info.rightShoulderBuddy()),
+				info.backBling() == null ? null : Models.createBakableModel(info.backBling()),
+				CosmeticaSkinManager.processSkin(info.skin(), uuid),
+				info.slim()
 		);
 	}
 
@@ -674,6 +689,14 @@ public class Cosmetica implements ClientModInitializer {
 		}
 	}
 
+	// lore is drawn for every player in view each frame, so what can be is kept between frames rather than created
+	// each time. Only used on the render thread
+	private static final Map<String, LoreText> LORE_TEXT = new WeakHashMap<>();
+	private static final PoseTransform LORE_SCALE = PoseTransform.of(stack -> stack.scale(-0.025F * 0.75F, -0.025F * 0.75F, 0.025F * 0.75F));
+	private static final PoseTransform LORE_ORIENTATION = PoseTransform.of(stack -> {});
+	private static final SavedPose LORE_SAVED_POSE = new SavedPose();
+	private static float loreOrientationI, loreOrientationJ, loreOrientationK, loreOrientationR = 1;
+
 	public static void renderLore(EntityRenderDispatcher entityRenderDispatcher, Entity entity, PlayerModel<AbstractClientPlayer> playerModel, PoseStack stack, MultiBufferSource multiBufferSource, Font font, int packedLight) {
 		if (entity instanceof Player player) {
 			UUID lookupId = player.getUUID();
@@ -689,7 +712,7 @@ public class Cosmetica implements ClientModInitializer {
 							font,
 							multiBufferSource,
 							data.lore(),
-							Hats.OVERRIDDEN.getList(() -> data.hats()),
+							Hats.OVERRIDDEN.getList(data, PlayerData::hats),
 							player.hasItemInSlot(EquipmentSlot.HEAD),
 							!player.isSleeping(), // doNametagShift
 							entity.isDiscrete(),
@@ -711,7 +734,8 @@ public class Cosmetica implements ClientModInitializer {
 			float torsoFixedHatTopY = 0;
 
 			if (doNametagShift) {
-				for (BakableModel hat : hats) {
+				for (int i = 0; i < hats.size(); i++) {
+					BakableModel hat = hats.get(i);
 					if (!(config.getHatConflictMode() == ArmourConflictHandlingMode.HIDE_COSMETICS && (hat.extraInfo() & Model.SHOW_HAT_WITH_HELMET) == 0 && wearingHelmet)) {
 						if ((hat.extraInfo() & Model.LOCK_HAT_ORIENTATION) == 0) {
 							hatTopY = Math.max(hatTopY, (float) hat.bounds().y1());
@@ -737,8 +761,14 @@ public class Cosmetica implements ClientModInitializer {
 		}
 
 		// render lore
-		if (!lore.equals("")) {
-			Component component = new TextComponent(lore);
+		if (!lore.isEmpty()) {
+			LoreText text = LORE_TEXT.get(lore);
+
+			if (text == null || text.font() != font) {
+				FormattedCharSequence sequence = Language.getInstance().getVisualOrder(new TextComponent(lore));
+				text = new LoreText(font, sequence, (float) (-font.width(sequence) / 2));
+				LORE_TEXT.put(lore, text);
+			}
 
 			boolean fullyRender = !discrete;
 
@@ -746,31 +776,43 @@ public class Cosmetica implements ClientModInitializer {
 
 			stack.translate(0, 0.1, 0);
 
-			stack.pushPose();
+			LORE_SAVED_POSE.save(stack);
+
+			if (cameraOrientation.i() != loreOrientationI || cameraOrientation.j() != loreOrientationJ || cameraOrientation.k() != loreOrientationK || cameraOrientation.r() != loreOrientationR) {
+				loreOrientationI = cameraOrientation.i();
+				loreOrientationJ = cameraOrientation.j();
+				loreOrientationK = cameraOrientation.k();
+				loreOrientationR = cameraOrientation.r();
+				LORE_ORIENTATION.setRotation(cameraOrientation);
+			}
+
 			stack.translate(0.0D, height, 0.0D);
-			stack.mulPose(cameraOrientation);
-			stack.scale(-0.025F, -0.025F, 0.025F);
-			stack.scale(0.75F, 0.75F, 0.75F);
+			LORE_ORIENTATION.applyTo(stack);
+			LORE_SCALE.applyTo(stack);
 			Matrix4f textModel = stack.last().pose();
 
 			@SuppressWarnings("resource")
 			float backgroundOpacity = Minecraft.getInstance().options.getBackgroundOpacity(0.25F);
 			int alphaARGB = (int) (backgroundOpacity * 255.0F) << 24;
 
-			float xOffset = (float) (-font.width(component) / 2);
-
-			font.drawInBatch(component, xOffset, 0, 553648127, false, textModel, multiBufferSource, fullyRender, alphaARGB, packedLight);
+			font.drawInBatch(text.text(), text.xOffset(), 0, 553648127, false, textModel, multiBufferSource, fullyRender, alphaARGB, packedLight);
 
 			if (fullyRender) {
-				font.drawInBatch(component, xOffset, 0, -1, false, textModel, multiBufferSource, false, 0, packedLight);
+				font.drawInBatch(text.text(), text.xOffset(), 0, -1, false, textModel, multiBufferSource, false, 0, packedLight);
 			}
 
-			stack.popPose();
+			LORE_SAVED_POSE.restore(stack);
 		}
 	}
 
-	public static void renderTabIcon(PoseStack stack, int x, int y, UUID playerUUID, String name) {
-		PlayerData data = PlayerData.get(playerUUID, name, false);
+	/**
+	 * Lore laid out for drawing with the given font.
+	 */
+	private record LoreText(Font font, FormattedCharSequence text, float xOffset) {
+	}
+
+	public static void renderTabIcon(PoseStack stack, int x, int y, PlayerInfo playerInfo) {
+		PlayerData data = PlayerData.get(playerInfo);
 		@Nullable ResourceLocation iconTexture = data.icon();
 
 		if (iconTexture != null) {
@@ -811,16 +853,22 @@ public class Cosmetica implements ClientModInitializer {
 	}
 
 	public static void renderTexture(Matrix4f matrix4f, ResourceLocation texture, int x0, int x1, int y0, int y1, int z, float transparency) {
+		@Nullable FrameSheet sheet = FrameSheet.get(texture);
+		int frame = sheet == null ? 0 : sheet.getFrameToRender();
+		int frames = sheet == null ? 1 : sheet.getSheetFrames();
+		float v0 = (float) frame / frames;
+		float v1 = (float) (frame + 1) / frames;
+
 		RenderSystem.setShader(GameRenderer::getPositionTexShader);
 		RenderSystem.setShaderTexture(0, texture);
 		RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, transparency);
 
 		BufferBuilder bufferBuilder = Tesselator.getInstance().getBuilder();
 		bufferBuilder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
-		bufferBuilder.vertex(matrix4f, (float) x0, (float) y1, (float) z).uv(0, 1).endVertex();
-		bufferBuilder.vertex(matrix4f, (float) x1, (float) y1, (float) z).uv(1, 1).endVertex();
-		bufferBuilder.vertex(matrix4f, (float) x1, (float) y0, (float) z).uv(1, 0).endVertex();
-		bufferBuilder.vertex(matrix4f, (float) x0, (float) y0, (float) z).uv(0, 0).endVertex();
+		bufferBuilder.vertex(matrix4f, (float) x0, (float) y1, (float) z).uv(0, v1).endVertex();
+		bufferBuilder.vertex(matrix4f, (float) x1, (float) y1, (float) z).uv(1, v1).endVertex();
+		bufferBuilder.vertex(matrix4f, (float) x1, (float) y0, (float) z).uv(1, v0).endVertex();
+		bufferBuilder.vertex(matrix4f, (float) x0, (float) y0, (float) z).uv(0, v0).endVertex();
 		bufferBuilder.end();
 		BufferUploader.end(bufferBuilder);
 	}
@@ -830,6 +878,12 @@ public class Cosmetica implements ClientModInitializer {
 	}
 
 	public static void renderTextureLikeText(Matrix4f matrix4f, MultiBufferSource bufferSource, ResourceLocation texture, int x0, int x1, int y0, int y1, int z, int packedLight, float alpha, boolean discrete) {
+		@Nullable FrameSheet sheet = FrameSheet.get(texture);
+		int frame = sheet == null ? 0 : sheet.getFrameToRender();
+		int frames = sheet == null ? 1 : sheet.getSheetFrames();
+		float v0 = (float) frame / frames;
+		float v1 = (float) (frame + 1) / frames;
+
 		// Background
 		// ==========
 		if (!discrete) {
@@ -847,10 +901,10 @@ public class Cosmetica implements ClientModInitializer {
 			BufferBuilder bufferBuilder = Tesselator.getInstance().getBuilder();
 			bufferBuilder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
 
-			bufferBuilder.vertex(matrix4f, (float) x0, (float) y1, (float) z).uv(0, 1).endVertex();
-			bufferBuilder.vertex(matrix4f, (float) x1, (float) y1, (float) z).uv(1, 1).endVertex();
-			bufferBuilder.vertex(matrix4f, (float) x1, (float) y0, (float) z).uv(1, 0).endVertex();
-			bufferBuilder.vertex(matrix4f, (float) x0, (float) y0, (float) z).uv(0, 0).endVertex();
+			bufferBuilder.vertex(matrix4f, (float) x0, (float) y1, (float) z).uv(0, v1).endVertex();
+			bufferBuilder.vertex(matrix4f, (float) x1, (float) y1, (float) z).uv(1, v1).endVertex();
+			bufferBuilder.vertex(matrix4f, (float) x1, (float) y0, (float) z).uv(1, v0).endVertex();
+			bufferBuilder.vertex(matrix4f, (float) x0, (float) y0, (float) z).uv(0, v0).endVertex();
 
 			bufferBuilder.end();
 			BufferUploader.end(bufferBuilder);
@@ -864,10 +918,10 @@ public class Cosmetica implements ClientModInitializer {
 		RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, 1.0f);
 		VertexConsumer vertexConsumer = bufferSource.getBuffer(RenderType.text(texture));
 
-		vertexConsumer.vertex(matrix4f, (float) x0, (float) y1, (float) z).color(1.0f, 1.0f, 1.0f, mainRenderAlpha).uv(0, 1).uv2(packedLight).endVertex();
-		vertexConsumer.vertex(matrix4f, (float) x1, (float) y1, (float) z).color(1.0f, 1.0f, 1.0f, mainRenderAlpha).uv(1, 1).uv2(packedLight).endVertex();
-		vertexConsumer.vertex(matrix4f, (float) x1, (float) y0, (float) z).color(1.0f, 1.0f, 1.0f, mainRenderAlpha).uv(1, 0).uv2(packedLight).endVertex();
-		vertexConsumer.vertex(matrix4f, (float) x0, (float) y0, (float) z).color(1.0f, 1.0f, 1.0f, mainRenderAlpha).uv(0, 0).uv2(packedLight).endVertex();
+		vertexConsumer.vertex(matrix4f, (float) x0, (float) y1, (float) z).color(1.0f, 1.0f, 1.0f, mainRenderAlpha).uv(0, v1).uv2(packedLight).endVertex();
+		vertexConsumer.vertex(matrix4f, (float) x1, (float) y1, (float) z).color(1.0f, 1.0f, 1.0f, mainRenderAlpha).uv(1, v1).uv2(packedLight).endVertex();
+		vertexConsumer.vertex(matrix4f, (float) x1, (float) y0, (float) z).color(1.0f, 1.0f, 1.0f, mainRenderAlpha).uv(1, v0).uv2(packedLight).endVertex();
+		vertexConsumer.vertex(matrix4f, (float) x0, (float) y0, (float) z).color(1.0f, 1.0f, 1.0f, mainRenderAlpha).uv(0, v0).uv2(packedLight).endVertex();
 	}
 
 	public static void clearAllCaches() {
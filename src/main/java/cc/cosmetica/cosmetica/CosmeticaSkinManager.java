@@ -17,13 +17,20 @@
 package cc.cosmetica.cosmetica;
 
 import cc.cosmetica.api.Cape;
-import cc.cosmetica.api.Model;
+import cc.cosmetica.cosmetica.cosmetics.CachedUserInfo;
+import cc.cosmetica.cosmetica.cosmetics.PlayerData;
+import cc.cosmetica.cosmetica.cosmetics.model.Models;
+import cc.cosmetica.cosmetica.mixin.textures.TextureManagerAccessor;
 import cc.cosmetica.cosmetica.utils.DebugMode;
 import cc.cosmetica.cosmetica.utils.textures.AnimatedTexture;
+import cc.cosmetica.cosmetica.utils.textures.Base64Decoder;
 import cc.cosmetica.cosmetica.utils.textures.Base64Texture;
+import cc.cosmetica.cosmetica.utils.textures.ModelAtlas;
 import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.texture.AbstractTexture;
+import net.minecraft.client.renderer.texture.Tickable;
 import net.minecraft.client.resources.DefaultPlayerSkin;
 import net.minecraft.resources.ResourceLocation;
 import org.apache.commons.codec.binary.Base64;
@@ -32,39 +39,233 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Locale;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CosmeticaSkinManager {
-	private static Map<ResourceLocation, AbstractTexture> textures = new HashMap<>();
+	/**
+	 * Textures which have been, or are being, decoded. Lookups on different threads needing the same texture share one
+	 * decode. The future completes with null if the texture could not be decoded.
+	 */
+	private static final Map<ResourceLocation, CompletableFuture<AbstractTexture>> textures = new ConcurrentHashMap<>();
 	/**
 	 * Stores capes that have been both loaded and uploaded.
 	 */
-	private static Set<ResourceLocation> uploaded = new HashSet<>();
-	private static final MessageDigest SHA1;
-
-	static {
+	private static final Set<ResourceLocation> uploaded = ConcurrentHashMap.newKeySet();
+	/**
+	 * The decoded size, in bytes, of each loaded texture.
+	 */
+	private static final Map<ResourceLocation, Long> sizes = new ConcurrentHashMap<>();
+	/**
+	 * Maps the id of each cape and model texture seen to the content-keyed location of its image, so identical images
+	 * share a texture and images already seen aren't hashed again.
+	 */
+	private static final Map<ResourceLocation, ResourceLocation> aliases = new ConcurrentHashMap<>();
+	/**
+	 * Reference counts for textures used by cached player data. Textures are unloaded once their count has been zero
+	 * for {@link CosmeticaSkinManager#UNUSED_GRACE_MS}.
+	 */
+	private static final Map<ResourceLocation, Integer> references = new ConcurrentHashMap<>();
+	/**
+	 * Textures no longer used by any cached player data, and when they were last used. They are kept around for a while,
+	 * as players switching servers are likely to see the same cosmetics again.
+	 */
+	private static final Map<ResourceLocation, Long> unused = new ConcurrentHashMap<>();
+	/**
+	 * How long, in ms, unused textures and models are kept loaded.
+	 */
+	public static final long UNUSED_GRACE_MS = 1000L * Long.parseLong(System.getProperty("cosmetica.assetGraceSeconds", "120"));
+	/**
+	 * Textures drawn within this many ms are never evicted to meet the texture memory budget, so textures in view aren't
+	 * evicted and uploaded again every frame when the budget is too small.
+	 */
+	private static final long EVICTION_MIN_IDLE_MS = Long.parseLong(System.getProperty("cosmetica.evictionMinIdleMs", "5000"));
+	/**
+	 * Bytes of texture memory on the GPU as of the last budget check, and how many textures have been evicted.
+	 */
+	private static volatile long residentBytes;
+	private static final AtomicLong evictions = new AtomicLong();
+	/**
+	 * MessageDigest isn't thread safe, and textures are processed on many lookup threads at once.
+	 */
+	private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
 		try {
-			SHA1 = MessageDigest.getInstance("SHA-1");
+			return MessageDigest.getInstance("SHA-1");
 		} catch (NoSuchAlgorithmException e) {
 			throw new IllegalStateException("SHA-1 Hashing not supported by the current Java Configuration.", e);
 		}
-	}
+	});
 
 	public static void clearCaches() {
 		DebugMode.log("Clearing cosmetica skin caches");
-		textures = new HashMap<>();
-		uploaded = new HashSet<>();
+		Map<ResourceLocation, CompletableFuture<AbstractTexture>> loaded = new HashMap<>(textures);
+		textures.clear();
+		uploaded.clear();
+		sizes.clear();
+		aliases.clear();
+		references.clear();
+		unused.clear();
+
+		// the texture manager still holds the registered textures. Free them too, unless they've been replaced since.
+		// Textures still waiting to be uploaded are freed by their upload task instead
+		Runnable releaseLoaded = () -> {
+			ModelAtlas.clear();
+			Models.clearRenderTypes();
+
+			loaded.forEach((id, future) -> {
+				AbstractTexture texture = future.getNow(null);
+				if (texture != null) unregister(id, texture);
+			});
+		};
+
+		if (RenderSystem.isOnRenderThread()) {
+			releaseLoaded.run();
+		} else {
+			RenderSystem.recordRenderCall(releaseLoaded::run);
+		}
+	}
+
+	public static void retain(@Nullable ResourceLocation id) {
+		if (id != null) {
+			references.merge(id, 1, Integer::sum);
+			unused.remove(id);
+		}
+	}
+
+	/**
+	 * Release a reference to the given texture. Should be called on the render thread.
+	 */
+	public static void release(@Nullable ResourceLocation id) {
+		if (id == null) return;
+
+		if (references.computeIfPresent(id, (k, count) -> count > 1 ? count - 1 : null) == null) {
+			unused.put(id, Util.getMillis());
+		}
+	}
+
+	/**
+	 * Unload textures which have gone unused for longer than the grace period. Should be called on the render thread.
+	 */
+	public static void unloadUnused() {
+		long now = Util.getMillis();
+
+		for (Map.Entry<ResourceLocation, Long> entry : unused.entrySet()) {
+			if (now - entry.getValue() >= UNUSED_GRACE_MS && !references.containsKey(entry.getKey()) && unused.remove(entry.getKey(), entry.getValue())) {
+				unload(entry.getKey());
+			}
+		}
+	}
+
+	private static void unload(ResourceLocation id) {
+		CompletableFuture<AbstractTexture> future = textures.remove(id);
+
+		if (future != null) {
+			DebugMode.log("Unloading unused texture {}", id);
+			uploaded.remove(id);
+			sizes.remove(id);
+			// the cosmetics using this image are hashed again if seen again, rather than keeping their aliases forever
+			aliases.values().removeIf(id::equals);
+			ModelAtlas.remove(id);
+			Models.removeRenderType(id);
+
+			AbstractTexture texture = future.getNow(null);
+			if (texture != null) unregister(id, texture);
+		}
+	}
+
+	/**
+	 * Remove the given texture from the texture manager, if it is still registered there, and free it.
+	 * TextureManager#release only deletes the GL texture, leaving the texture registered with the deleted id, which the
+	 * texture manager would delete again (by then possibly another texture's) when the location is next registered.
+	 * Should be called on the render thread.
+	 */
+	private static void unregister(ResourceLocation id, AbstractTexture texture) {
+		TextureManagerAccessor textureManager = (TextureManagerAccessor) Minecraft.getInstance().getTextureManager();
+
+		if (textureManager.getByPath().remove(id, texture)) {
+			if (texture instanceof Tickable tickable) {
+				textureManager.getTickableTextures().remove(tickable);
+			}
+
+			texture.close();
+		}
+	}
+
+	/**
+	 * Evict the least recently drawn textures from memory until the textures on the GPU fit in the budget set in the
+	 * config. Evicted textures stay registered, and are decoded and uploaded again from their PNG data next time they are
+	 * drawn. Should be called on the render thread.
+	 */
+	public static void enforceBudget() {
+		long budget = Cosmetica.getConfig().getTextureMemoryBudget();
+		long now = Util.getMillis();
+		long resident = 0;
+		List<Base64Texture> evictable = new ArrayList<>();
+
+		for (Map.Entry<ResourceLocation, CompletableFuture<AbstractTexture>> entry : textures.entrySet()) {
+			// only textures which have made it to the texture manager are on the GPU
+			if (entry.getValue().getNow(null) instanceof Base64Texture texture && uploaded.contains(entry.getKey()) && texture.isResident()) {
+				resident += texture.getSize();
+
+				if (now - texture.getLastRendered() > EVICTION_MIN_IDLE_MS) {
+					evictable.add(texture);
+				}
+			}
+		}
+
+		if (resident > budget) {
+			evictable.sort(Comparator.comparingLong(AnimatedTexture::getLastRendered));
+
+			for (Base64Texture texture : evictable) {
+				if (resident <= budget) break;
+
+				texture.evict();
+				resident -= texture.getSize();
+				evictions.incrementAndGet();
+			}
+		}
+
+		residentBytes = resident;
 	}
 
 	public static boolean isUploaded(ResourceLocation id) {
-		synchronized(uploaded) {
-			return uploaded.contains(id);
+		return uploaded.contains(id);
+	}
+
+	/**
+	 * Report how much texture memory is in use, and how much would be in use if players with the same skin, cape, or
+	 * icon each had their own copy.
+	 */
+	public static String getStats() {
+		long loaded = 0;
+		long unshared = 0;
+
+		for (Map.Entry<ResourceLocation, Long> entry : sizes.entrySet()) {
+			loaded += entry.getValue();
+			unshared += entry.getValue() * Math.max(1, references.getOrDefault(entry.getKey(), 0));
 		}
+
+		long distinctImages = aliases.values().stream().distinct().count();
+		long freed = Base64Texture.getFreedPixelsSize();
+		int players = Math.max(1, PlayerData.getCacheSize());
+
+		return "Textures: " + sizes.size() + " (" + loaded / 1024 + " KiB)"
+				+ ", unshared: " + unshared / 1024 + " KiB"
+				+ ", saved by sharing: " + (unshared - loaded) / 1024 + " KiB"
+				+ ", cosmetics with a duplicate image: " + (aliases.size() - distinctImages)
+				+ ", on GPU: " + residentBytes / 1024 + "/" + Cosmetica.getConfig().getTextureMemoryBudget() / 1024 + " KiB budget"
+				+ ", evictions: " + evictions.get()
+				+ ", reload data: " + Base64Texture.getReloadDataSize() / 1024 + " KiB off-heap"
+				+ ", freed after upload: " + freed / 1024 + " KiB (" + freed / 1024 * 100 / players + " KiB per 100 players)"
+				+ ". " + Base64Decoder.getStats();
 	}
 
 	public static ResourceLocation testId(String id) {
@@ -76,9 +277,7 @@ public class CosmeticaSkinManager {
 	}
 
 	public static void setTestUploaded(String testId) {
-		synchronized (uploaded) {
-			uploaded.add(testId(testId));
-		}
+		uploaded.add(testId(testId));
 	}
 
 	public static String pathify(String id) {
@@ -103,15 +302,20 @@ public class CosmeticaSkinManager {
 	}
 
 	public static ResourceLocation processIcon(String base64Texture) {
-		return saveTexture(textureId("icon", Base64.encodeBase64String(SHA1.digest(base64Texture.getBytes()))), base64Texture, 50 * 2);
+		return saveTexture(textureId("icon", contentHash(base64Texture)), base64Texture, 50 * 2);
 	}
 
-	public static ResourceLocation processModel(Model model) {
-		return saveTexture(textureId(model.getType().getUrlString(), model.getId()), model.getTexture(), 50 * ((model.flags() >> 4) & 0x1F));
+	public static ResourceLocation processModel(CachedUserInfo.CachedModel model) {
+		int mspf = 50 * ((model.flags() >> 4) & 0x1F);
+		return saveTexture(contentId(model.type(), model.id(), model.texture(), mspf), model.texture(), mspf);
 	}
 
 	public static ResourceLocation processCape(Cape cloak) {
-		return saveTexture(textureId("cape", cloak.getId()), cloak.getImage(), cloak.getFrameDelay());
+		return saveTexture(contentId("cape", cloak.getId(), cloak.getImage(), cloak.getFrameDelay()), cloak.getImage(), cloak.getFrameDelay());
+	}
+
+	public static ResourceLocation processCape(CachedUserInfo.CachedCape cloak) {
+		return saveTexture(contentId("cape", cloak.id(), cloak.image(), cloak.frameDelay()), cloak.image(), cloak.frameDelay());
 	}
 
 	public static ResourceLocation processSkin(@Nullable String base64Skin, UUID uuid) {
@@ -119,41 +323,78 @@ public class CosmeticaSkinManager {
 			return DefaultPlayerSkin.getDefaultSkin(uuid);
 		}
 
-		return saveTexture(new ResourceLocation("cosmetica", "skin/" + uuid.toString().toLowerCase(Locale.ROOT)), base64Skin, 0);
+		// keyed by content so a changed skin gets a new texture, rather than reusing the old one
+		return saveTexture(textureId("skin", contentHash(base64Skin)), base64Skin, 0);
+	}
+
+	/**
+	 * Get the content-keyed location for the texture of the given cosmetic. The frame time is part of the key, as the
+	 * same image can be animated at different speeds.
+	 */
+	private static ResourceLocation contentId(String type, String cosmeticId, String texture, int mspf) {
+		return aliases.computeIfAbsent(textureId(type, cosmeticId), k -> textureId(type, contentHash(texture) + "-" + mspf));
+	}
+
+	private static String contentHash(String texture) {
+		return Base64.encodeBase64String(SHA1.get().digest(texture.getBytes()));
 	}
 
+	@Nullable
 	private static ResourceLocation saveTexture(ResourceLocation id, String texture, int mspf) {
-		if (!textures.containsKey(id)) {
-			try {
-				String type = id.getPath().split("\\/")[0];
-				AnimatedTexture tex = createTexture(type, id, texture, mspf);
-
-				if (RenderSystem.isOnRenderThreadOrInit()) {
-					Minecraft.getInstance().getTextureManager().register(id, tex);
-					synchronized(uploaded) { uploaded.add(id); }
-				}
-				else {
-					RenderSystem.recordRenderCall(() -> {
+		CompletableFuture<AbstractTexture> decode = new CompletableFuture<>();
+		CompletableFuture<AbstractTexture> existing = textures.putIfAbsent(id, decode);
+
+		if (existing != null) {
+			// about to be used again. Don't unload it in the meantime
+			unused.computeIfPresent(id, (k, lastUsed) -> Util.getMillis());
+			// if another thread is still decoding it, wait for it rather than decoding it twice. The render thread can't
+			// wait, so gets the location now, which isn't uploaded until the decode finishes (see isUploaded)
+			if (!existing.isDone() && RenderSystem.isOnRenderThread()) return id;
+			return existing.join() == null ? null : id;
+		}
+
+		try {
+			String type = id.getPath().split("\\/")[0];
+			AnimatedTexture tex = createTexture(type, id, texture, mspf);
+
+			long size = 4L * tex.getRawImage().getWidth() * tex.getRawImage().getHeight();
+
+			// log before handing the texture over, as its image can be freed once uploaded
+			DebugMode.log(
+					"Registering " + type + " texture for {}. Raw Size: {}x{}, Interpreted Size: {}x{} with {} frames.",
+					id,
+					tex.getRawImage().getWidth(), tex.getRawImage().getHeight(),
+					tex.getRawImage().getWidth(), tex.getFrameHeight(), tex.getFrameCount());
+
+			if (RenderSystem.isOnRenderThreadOrInit()) {
+				Minecraft.getInstance().getTextureManager().register(id, tex);
+				uploaded.add(id);
+			}
+			else {
+				// decoded off-thread. Upload once there's room in a frame's budget
+				TextureUploads.submit(size, () -> {
+					if (textures.get(id) == decode) {
 						Minecraft.getInstance().getTextureManager().register(id, tex);
-						synchronized (uploaded) {
-							uploaded.add(id);
-						}
-					});
-				}
+						uploaded.add(id);
+					} else { // unloaded or cleared before it got uploaded
+						tex.close();
+					}
+				});
+			}
 
-				DebugMode.log(
-						"Registering " + type + " texture for {}. Raw Size: {}x{}, Interpreted Size: {}x{} with {} frames.",
-						id,
-						tex.getRawImage().getWidth(), tex.getRawImage().getHeight(),
-						tex.getRawImage().getWidth(), tex.getFrameHeight(), tex.getFrameCount());
-				textures.put(id, tex);
-			} catch (IOException e) {
-				Cosmetica.LOGGER.error("Error loading texture", e);
-				return null;
+			sizes.put(id, size);
+			decode.complete(tex);
+			return id;
+		} catch (IOException e) {
+			Cosmetica.LOGGER.error("Error loading texture", e);
+			return null;
+		} finally {
+			if (!decode.isDone()) {
+				// failed. Let waiting threads know, and allow a later attempt to try again
+				textures.remove(id, decode);
+				decode.complete(null);
 			}
 		}
-
-		return id;
 	}
 
 	/**
@@ -172,8 +413,6 @@ public class CosmeticaSkinManager {
 	 * @throws IOException if there is an error reading the texture.
 	 */
 	private static AnimatedTexture createTexture(String type, ResourceLocation id, String texture, int mspf) throws IOException {
-		texture = texture.substring(22);
-
 		if ("cape".equals(type)) {
 			return Base64Texture.cape(id, texture, mspf);
 		} else if ("skin".equals(type)) {
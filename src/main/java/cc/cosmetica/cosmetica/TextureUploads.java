@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica;
+
+import cc.cosmetica.cosmetica.utils.DebugMode;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads textures decoded off-thread to the GPU a few at a time, rather than all in the next frame. Each frame, queued
+ * uploads are run until either {@code cosmetica.uploadBudgetMicros} of time or {@code cosmetica.uploadBudgetKiB} of
+ * pixels have been spent, so a crowd loading in is spread over several frames instead of causing a hitch. At least one
+ * upload is run every frame, however large.
+ */
+public final class TextureUploads {
+	private static final long BUDGET_NANOS = 1000L * Long.parseLong(System.getProperty("cosmetica.uploadBudgetMicros", "2000"));
+	private static final long BUDGET_BYTES = 1024L * Long.parseLong(System.getProperty("cosmetica.uploadBudgetKiB", "8192"));
+
+	private static final Queue<Upload> queue = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger queued = new AtomicInteger();
+
+	// metrics. Only updated on the render thread
+	private static long uploads;
+	private static long uploadedBytes;
+	private static long uploadNanos;
+	private static long maxUploadNanos;
+	private static long deferredFrames;
+	private static int maxQueued;
+
+	/**
+	 * Queue an upload to be run on the render thread.
+	 * @param bytes the size of the pixel data to be uploaded, counted against the per-frame budget.
+	 * @param upload the upload.
+	 */
+	public static void submit(long bytes, Runnable upload) {
+		queue.add(new Upload(bytes, upload));
+		queued.incrementAndGet();
+	}
+
+	/**
+	 * Run queued uploads until this frame's budget is spent. Called at the start of every frame, on the render thread.
+	 */
+	public static void uploadPending() {
+		if (queue.isEmpty()) return;
+
+		maxQueued = Math.max(maxQueued, queued.get());
+		long frameStart = System.nanoTime();
+		long frameBytes = 0;
+		Upload upload;
+
+		while ((upload = queue.peek()) != null) {
+			if (frameBytes > 0 && (frameBytes + upload.bytes > BUDGET_BYTES || System.nanoTime() - frameStart > BUDGET_NANOS)) {
+				deferredFrames++;
+				break;
+			}
+
+			queue.poll();
+			queued.decrementAndGet();
+
+			long start = System.nanoTime();
+
+			try {
+				upload.upload.run();
+			} catch (RuntimeException e) {
+				Cosmetica.LOGGER.error("Error uploading texture", e);
+			}
+
+			long time = System.nanoTime() - start;
+			uploads++;
+			uploadNanos += time;
+			maxUploadNanos = Math.max(maxUploadNanos, time);
+			uploadedBytes += upload.bytes;
+			frameBytes += upload.bytes;
+		}
+
+		DebugMode.log("Uploaded {} KiB of textures in {}us", frameBytes / 1024, (System.nanoTime() - frameStart) / 1000);
+	}
+
+	public static String getStats() {
+		return "Texture uploads queued: " + queued.get()
+				+ " (max " + maxQueued + ")"
+				+ ", uploaded: " + uploads + " (" + uploadedBytes / 1024 + " KiB)"
+				+ ", total time: " + uploadNanos / 1_000_000 + "ms"
+				+ ", longest: " + maxUploadNanos / 1000 + "us"
+				+ ", frames over budget: " + deferredFrames;
+	}
+
+	private record Upload(long bytes, Runnable upload) {
+	}
+}
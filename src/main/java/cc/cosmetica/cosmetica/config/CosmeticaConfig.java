@@ -65,6 +65,7 @@ public class CosmeticaConfig {
             s -> ArmourConflictHandlingMode.valueOf(s.toUpperCase(Locale.ROOT)),
             mode -> mode.toString().toLowerCase(Locale.ROOT)
     );
+    private final Option<Integer> textureMemoryBudget = new Option<>("texture-memory-budget-mb", 256, Integer::parseInt);
 
     public void initialize() throws IOException {
         load();
@@ -162,6 +163,13 @@ public class CosmeticaConfig {
         this.backBlingElytraConflictMode.setValue(mode);
     }
 
+    /**
+     * @return how many bytes of cosmetica textures may be kept on the GPU before the least recently drawn are evicted.
+     */
+    public long getTextureMemoryBudget() {
+        return Math.max(0, this.textureMemoryBudget.getValue()) * 1024L * 1024L;
+    }
+
     private class Option<T> {
         Option(String name, T defaultValue, Function<String, T> deserialiser) {
             this(name, defaultValue, deserialiser, String::valueOf);
@@ -27,6 +27,8 @@ public class DebugModeConfig {
 	@SerializedName("debug_commands") public boolean debugCommands = false;
 	@SerializedName("always_show_cosmetica_splash") public boolean forceCosmeticaSplash = false;
 	@SerializedName("always_show_rse_screen") public boolean forceRseScreen = false;
+	@SerializedName("lookup_stand_in") public boolean lookupStandIn = false;
+	@SerializedName("lookup_stand_in_latency") public int lookupStandInLatency = 250;
 
 
 	@SerializedName("hat") public TestModelConfig hat = new TestModelConfig("hat");
@@ -59,14 +59,12 @@ public class BackBling<T extends AbstractClientPlayer> extends CustomLayer<T, Pl
 			}
 		}
 
-		stack.pushPose();
 		doCoolRenderThings(modelData, this.getParentModel().body, stack, multiBufferSource, packedLightProbably, 0, -0.1f - (0.15f/6.0f), 0.1f + (0.4f/16.0f));
-		stack.popPose();
 	}
 
 	@Override
 	public void render(PoseStack stack, MultiBufferSource bufferSource, int packedLight, FakePlayer player, float o, float n, float delta, float bob, float yRotDiff, float xRot) {
-		BakableModel modelData = OVERRIDDEN.get(() -> player.getData().backBling());
+		BakableModel modelData = OVERRIDDEN.get(player, p -> p.getData().backBling());
 
 		if (modelData == null) return; // if it has a model
 
@@ -77,9 +75,7 @@ public class BackBling<T extends AbstractClientPlayer> extends CustomLayer<T, Pl
 			}
 		}
 
-		stack.pushPose();
 		doCoolRenderThings(modelData, this.getParentModel().body, stack, bufferSource, packedLight, 0, -0.1f - (0.15f/6.0f), 0.1f);
-		stack.popPose();
 	}
 
 	public static final CosmeticStack<BakableModel> OVERRIDDEN = new CosmeticStack();
@@ -87,7 +83,7 @@ public class BackBling<T extends AbstractClientPlayer> extends CustomLayer<T, Pl
 	@Nullable
 	public static BakableModel getBackBling(AbstractClientPlayer player) {
 		return canOverridePlayerCosmetics(player) ?
-				OVERRIDDEN.get(() -> PlayerData.get(player).backBling()) :
+				OVERRIDDEN.get(player, p -> PlayerData.get(p).backBling()) :
 				PlayerData.get(player).backBling();
 	}
 
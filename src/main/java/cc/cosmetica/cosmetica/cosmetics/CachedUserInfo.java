@@ -0,0 +1,252 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica.cosmetics;
+
+import cc.cosmetica.api.Box;
+import cc.cosmetica.api.Cape;
+import cc.cosmetica.api.CustomCape;
+import cc.cosmetica.api.Model;
+import cc.cosmetica.api.ShoulderBuddies;
+import cc.cosmetica.api.UserInfo;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A snapshot of the parts of a {@link UserInfo} response needed to build {@link PlayerData}. Unlike the API response,
+ * this can be written to and read from the disk cache.
+ */
+public record CachedUserInfo(String lore, boolean upsideDown, String icon, boolean online, String prefix, String suffix,
+							 List<CachedModel> hats, @Nullable CachedCape cape, @Nullable CachedModel leftShoulderBuddy,
+							 @Nullable CachedModel rightShoulderBuddy, @Nullable CachedModel backBling, @Nullable String skin, boolean slim) {
+	public static CachedUserInfo of(UserInfo info) {
+		Optional<ShoulderBuddies> shoulderBuddies = info.getShoulderBuddies();
+		List<CachedModel> hats = new ArrayList<>(info.getHats().size());
+
+		for (Model hat : info.getHats()) {
+			hats.add(CachedModel.of(hat));
+		}
+
+		return new CachedUserInfo(
+				info.getLore(),
+				info.isUpsideDown(),
+				info.getIcon(),
+				info.isOnline(),
+				info.getPrefix(),
+				info.getSuffix(),
+				hats,
+				info.getCape().map(CachedCape::of).orElse(null),
+				shoulderBuddies.flatMap(ShoulderBuddies::getLeft).map(CachedModel::of).orElse(null),
+				shoulderBuddies.flatMap(ShoulderBuddies::getRight).map(CachedModel::of).orElse(null),
+				info.getBackBling().map(CachedModel::of).orElse(null),
+				info.getSkin(),
+				info.isSlim()
+		);
+	}
+
+	/**
+	 * @return whether this is the info of a player with no cosmetics.
+	 */
+	public boolean hasNoCosmetics() {
+		return this.lore.isEmpty() && !this.upsideDown && this.icon.isEmpty() && !this.online && this.prefix.isEmpty() && this.suffix.isEmpty()
+				&& this.hats.isEmpty() && this.cape == null && this.leftShoulderBuddy == null && this.rightShoulderBuddy == null
+				&& this.backBling == null && this.skin == null && !this.slim;
+	}
+
+	/**
+	 * Write this user info. Textures and model json are handed to the given writer, and only the keys it returns are
+	 * written, so the caller can store each distinct one once.
+	 */
+	public void write(DataOutput out, BlobWriter blobs) throws IOException {
+		out.writeUTF(this.lore);
+		out.writeBoolean(this.upsideDown);
+		writeBlob(out, this.icon, blobs);
+		out.writeBoolean(this.online);
+		out.writeUTF(this.prefix);
+		out.writeUTF(this.suffix);
+
+		out.writeByte(this.hats.size());
+
+		for (CachedModel hat : this.hats) {
+			hat.write(out, blobs);
+		}
+
+		out.writeBoolean(this.cape != null);
+		if (this.cape != null) this.cape.write(out, blobs);
+
+		CachedModel.writeNullable(out, this.leftShoulderBuddy, blobs);
+		CachedModel.writeNullable(out, this.rightShoulderBuddy, blobs);
+		CachedModel.writeNullable(out, this.backBling, blobs);
+
+		out.writeBoolean(this.skin != null);
+		if (this.skin != null) writeBlob(out, this.skin, blobs);
+		out.writeBoolean(this.slim);
+	}
+
+	/**
+	 * Read user info written by {@link CachedUserInfo#write}, reading textures and model json back from their keys with
+	 * the given reader.
+	 */
+	public static CachedUserInfo read(DataInput in, BlobReader blobs) throws IOException {
+		String lore = in.readUTF();
+		boolean upsideDown = in.readBoolean();
+		String icon = readBlob(in, blobs);
+		boolean online = in.readBoolean();
+		String prefix = in.readUTF();
+		String suffix = in.readUTF();
+
+		int hatCount = in.readUnsignedByte();
+		List<CachedModel> hats = new ArrayList<>(hatCount);
+
+		for (int i = 0; i < hatCount; i++) {
+			hats.add(CachedModel.read(in, blobs));
+		}
+
+		CachedCape cape = in.readBoolean() ? CachedCape.read(in, blobs) : null;
+		CachedModel leftShoulderBuddy = CachedModel.readNullable(in, blobs);
+		CachedModel rightShoulderBuddy = CachedModel.readNullable(in, blobs);
+		CachedModel backBling = CachedModel.readNullable(in, blobs);
+		String skin = in.readBoolean() ? readBlob(in, blobs) : null;
+		boolean slim = in.readBoolean();
+
+		return new CachedUserInfo(lore, upsideDown, icon, online, prefix, suffix, hats, cape, leftShoulderBuddy, rightShoulderBuddy, backBling, skin, slim);
+	}
+
+	// empty strings (no icon, builtin models) are written as is rather than as blobs
+
+	private static void writeBlob(DataOutput out, String blob, BlobWriter blobs) throws IOException {
+		out.writeUTF(blob.isEmpty() ? "" : blobs.write(blob));
+	}
+
+	private static String readBlob(DataInput in, BlobReader blobs) throws IOException {
+		String key = in.readUTF();
+		return key.isEmpty() ? "" : blobs.read(key);
+	}
+
+	/**
+	 * Stores the textures and model json of user info being written.
+	 */
+	@FunctionalInterface
+	public interface BlobWriter {
+		/**
+		 * @return the key to read the given blob back with.
+		 */
+		String write(String blob) throws IOException;
+	}
+
+	/**
+	 * Reads back the textures and model json of user info being read.
+	 */
+	@FunctionalInterface
+	public interface BlobReader {
+		String read(String key) throws IOException;
+	}
+
+	/**
+	 * @param type the url string of the model's cosmetic type.
+	 * @param model the block model json. Empty for builtin models.
+	 * @param texture the base64 texture, including the 22-character header. Empty for builtin models.
+	 */
+	public record CachedModel(String id, String name, String type, boolean builtin, String model, String texture, int flags, Box bounds) {
+		public static CachedModel of(Model model) {
+			return new CachedModel(
+					model.getId(),
+					model.getName(),
+					model.getType().getUrlString(),
+					model.isBuiltin(),
+					model.isBuiltin() ? "" : model.getModel(),
+					model.isBuiltin() ? "" : model.getTexture(),
+					model.flags(),
+					model.getBoundingBox()
+			);
+		}
+
+		private void write(DataOutput out, BlobWriter blobs) throws IOException {
+			out.writeUTF(this.id);
+			out.writeUTF(this.name);
+			out.writeUTF(this.type);
+			out.writeBoolean(this.builtin);
+			writeBlob(out, this.model, blobs);
+			writeBlob(out, this.texture, blobs);
+			out.writeInt(this.flags);
+			out.writeDouble(this.bounds.x0());
+			out.writeDouble(this.bounds.y0());
+			out.writeDouble(this.bounds.z0());
+			out.writeDouble(this.bounds.x1());
+			out.writeDouble(this.bounds.y1());
+			out.writeDouble(this.bounds.z1());
+		}
+
+		private static CachedModel read(DataInput in, BlobReader blobs) throws IOException {
+			return new CachedModel(
+					in.readUTF(),
+					in.readUTF(),
+					in.readUTF(),
+					in.readBoolean(),
+					readBlob(in, blobs),
+					readBlob(in, blobs),
+					in.readInt(),
+					new Box(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble())
+			);
+		}
+
+		private static void writeNullable(DataOutput out, @Nullable CachedModel model, BlobWriter blobs) throws IOException {
+			out.writeBoolean(model != null);
+			if (model != null) model.write(out, blobs);
+		}
+
+		@Nullable
+		private static CachedModel readNullable(DataInput in, BlobReader blobs) throws IOException {
+			return in.readBoolean() ? read(in, blobs) : null;
+		}
+	}
+
+	/**
+	 * @param image the base64 cape image, including the 22-character header.
+	 * @param thirdParty whether this is a cape from a third party cape server.
+	 */
+	public record CachedCape(String id, String name, String origin, String image, int frameDelay, boolean thirdParty) {
+		public static CachedCape of(Cape cape) {
+			return new CachedCape(
+					cape.getId(),
+					cape.getName(),
+					cape.getOrigin(),
+					cape.getImage(),
+					cape.getFrameDelay(),
+					!cape.isCosmeticaAlternative() && !(cape instanceof CustomCape)
+			);
+		}
+
+		private void write(DataOutput out, BlobWriter blobs) throws IOException {
+			out.writeUTF(this.id);
+			out.writeUTF(this.name);
+			out.writeUTF(this.origin);
+			writeBlob(out, this.image, blobs);
+			out.writeInt(this.frameDelay);
+			out.writeBoolean(this.thirdParty);
+		}
+
+		private static CachedCape read(DataInput in, BlobReader blobs) throws IOException {
+			return new CachedCape(in.readUTF(), in.readUTF(), in.readUTF(), readBlob(in, blobs), in.readInt(), in.readBoolean());
+		}
+	}
+}
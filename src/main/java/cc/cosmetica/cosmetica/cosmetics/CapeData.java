@@ -39,7 +39,7 @@ public final class CapeData {
 	public static final CapeData NO_CAPE = new CapeData(null, "", "none", false, "");
 
 	public ResourceLocation getImage() {
-		return CustomLayer.CAPE_OVERRIDER.get(() -> this.image);
+		return CustomLayer.CAPE_OVERRIDER.get(this, data -> data.image);
 	}
 
 	public ResourceLocation getActualImage() {
@@ -17,8 +17,11 @@
 package cc.cosmetica.cosmetica.cosmetics;
 
 import cc.cosmetica.cosmetica.cosmetics.model.BakableModel;
+import cc.cosmetica.cosmetica.cosmetics.model.CompiledModel;
 import cc.cosmetica.cosmetica.cosmetics.model.CosmeticStack;
 import cc.cosmetica.cosmetica.cosmetics.model.Models;
+import cc.cosmetica.cosmetica.utils.PoseTransform;
+import cc.cosmetica.cosmetica.utils.SavedPose;
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.math.Quaternion;
 import com.mojang.math.Vector3f;
@@ -29,7 +32,6 @@ import net.minecraft.client.model.geom.ModelPart;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.entity.RenderLayerParent;
 import net.minecraft.client.renderer.entity.layers.RenderLayer;
-import net.minecraft.client.resources.model.BakedModel;
 import net.minecraft.client.resources.model.ModelManager;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.entity.player.Player;
@@ -47,15 +49,13 @@ public abstract class CustomLayer<T extends Player, P extends HumanoidModel<T>>
     }
 
     public void doCoolRenderThings(BakableModel bakableModel, ModelPart modelPart, PoseStack stack, MultiBufferSource multiBufferSource, int packedLightProbably, float x, float y, float z, boolean mirror) {
-        BakedModel model = Models.getBakedModel(bakableModel);
+        CompiledModel model = Models.getBakedModel(bakableModel);
         if (model == null) return; // if it has errors with the baked model or cannot render it for another reason will return null
-        stack.pushPose();
-        float o = 1.001f; // prevent z fighting
+        SAVED_POSE.save(stack);
         modelPart.translateAndRotate(stack);
-        stack.scale(o, -o, -o);
-        stack.mulPose(new Quaternion(Vector3f.YP, (float)Math.PI, false)); // pi radians on y axis
+        FLIP.applyTo(stack);
         stack.translate(x, y, z); // vanilla: 0.0 second param
-        if (mirror) stack.scale(-1, 1, 1);
+        if (mirror) MIRROR.applyTo(stack);
         Models.renderModel(
                 model,
                 stack,
@@ -63,7 +63,7 @@ public abstract class CustomLayer<T extends Player, P extends HumanoidModel<T>>
                 bakableModel.image(),
                 packedLightProbably);
 
-        stack.popPose();
+        SAVED_POSE.restore(stack);
     }
 
     protected static boolean canOverridePlayerCosmetics(Player player) {
@@ -71,4 +71,12 @@ public abstract class CustomLayer<T extends Player, P extends HumanoidModel<T>>
     }
 
 	public static final CosmeticStack<ResourceLocation> CAPE_OVERRIDER = new CosmeticStack<>();
+
+    private static final PoseTransform FLIP = PoseTransform.of(stack -> {
+        float o = 1.001f; // prevent z fighting
+        stack.scale(o, -o, -o);
+        stack.mulPose(new Quaternion(Vector3f.YP, (float)Math.PI, false)); // pi radians on y axis
+    });
+    private static final PoseTransform MIRROR = PoseTransform.of(stack -> stack.scale(-1, 1, 1));
+    private static final SavedPose SAVED_POSE = new SavedPose();
 }
@@ -23,6 +23,8 @@ import cc.cosmetica.cosmetica.cosmetics.model.CosmeticStack;
 import cc.cosmetica.cosmetica.cosmetics.model.BakableModel;
 import cc.cosmetica.cosmetica.screens.fakeplayer.FakePlayer;
 import cc.cosmetica.cosmetica.screens.fakeplayer.MenuRenderLayer;
+import cc.cosmetica.cosmetica.utils.PoseTransform;
+import cc.cosmetica.cosmetica.utils.SavedPose;
 import com.mojang.blaze3d.vertex.PoseStack;
 import net.minecraft.client.model.PlayerModel;
 import net.minecraft.client.renderer.MultiBufferSource;
@@ -43,9 +45,11 @@ public class Hats<T extends Player> extends CustomLayer<T, PlayerModel<T>> imple
 		if (player.isInvisible()) return;
 		List<BakableModel> hats = getHats(player);
 
-		stack.pushPose();
+		SAVED_POSE.save(stack);
+
+		for (int i = 0; i < hats.size(); i++) {
+			BakableModel modelData = hats.get(i);
 
-		for (BakableModel modelData : hats) {
 			if ((modelData.extraInfo() & Model.SHOW_HAT_WITH_HELMET) == 0 && player.hasItemInSlot(EquipmentSlot.HEAD)) {
 				if (Cosmetica.getConfig().getHatConflictMode() == ArmourConflictHandlingMode.HIDE_COSMETICS) {
 					continue; // disable hat flag
@@ -58,36 +62,40 @@ public class Hats<T extends Player> extends CustomLayer<T, PlayerModel<T>> imple
 				doCoolRenderThings(modelData, this.getParentModel().body, stack, multiBufferSource, packedLight, 0, 0.77f, 0);
 			}
 
-			stack.scale(1.001f, 1.001f, 1.001f); // stop multiple hats conflicting
+			HAT_SPACING.applyTo(stack); // stop multiple hats conflicting
 		}
 
-		stack.popPose();
+		SAVED_POSE.restore(stack);
 	}
 
 	@Override
 	public void render(PoseStack stack, MultiBufferSource bufferSource, int packedLight, FakePlayer player, float o, float n, float delta, float bob, float yRotDiff, float xRot) {
-		List<BakableModel> hats = OVERRIDDEN.getList(() -> player.getData().hats());
+		List<BakableModel> hats = OVERRIDDEN.getList(player, p -> p.getData().hats());
+
+		SAVED_POSE.save(stack);
 
-		stack.pushPose();
+		for (int i = 0; i < hats.size(); i++) {
+			BakableModel modelData = hats.get(i);
 
-		for (BakableModel modelData : hats) {
 			if ((modelData.extraInfo() & Model.LOCK_HAT_ORIENTATION) == 0) {
 				doCoolRenderThings(modelData, this.getParentModel().getHead(), stack, bufferSource, packedLight, 0, 0.75f, 0);
 			} else {
 				doCoolRenderThings(modelData, this.getParentModel().body, stack, bufferSource, packedLight, 0, 0.77f, 0);
 			}
 
-			stack.scale(1.001f, 1.001f, 1.001f); // stop multiple hats conflicting
+			HAT_SPACING.applyTo(stack); // stop multiple hats conflicting
 		}
 
-		stack.popPose();
+		SAVED_POSE.restore(stack);
 	}
 
 	public static final CosmeticStack<BakableModel> OVERRIDDEN = new CosmeticStack();
+	private static final PoseTransform HAT_SPACING = PoseTransform.of(stack -> stack.scale(1.001f, 1.001f, 1.001f));
+	private static final SavedPose SAVED_POSE = new SavedPose();
 
 	public static List<BakableModel> getHats(Player player) {
 		return canOverridePlayerCosmetics(player) ?
-				OVERRIDDEN.getList(() -> PlayerData.get(player).hats()) :
+				OVERRIDDEN.getList(player, p -> PlayerData.get(p).hats()) :
 				PlayerData.get(player).hats();
 	}
 }
\ No newline at end of file
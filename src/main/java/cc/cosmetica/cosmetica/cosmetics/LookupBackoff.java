@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica.cosmetics;
+
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
+import cc.cosmetica.cosmetica.utils.DebugMode;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the outcome of player lookups, so failed lookups are retried with exponential backoff instead of never or
+ * every frame, and players known to have no cosmetics aren't looked up again for a while. The API being down as a
+ * whole is handled by the {@link ApiCircuitBreaker}.
+ */
+public final class LookupBackoff {
+	private static final long BASE_DELAY_MS = Long.parseLong(System.getProperty("cosmetica.lookupBackoffBase", "2000"));
+	private static final long MAX_DELAY_MS = 1000L * Long.parseLong(System.getProperty("cosmetica.lookupBackoffMaxSeconds", "300"));
+	private static final long NO_DATA_TTL_MS = 1000L * 60 * Long.parseLong(System.getProperty("cosmetica.noDataCacheMinutes", "30"));
+
+	private static final Map<UUID, Failure> failures = new ConcurrentHashMap<>();
+	/**
+	 * Players with no cosmetics, mapped to when that stops being trusted.
+	 */
+	private static final Map<UUID, Long> noData = new ConcurrentHashMap<>();
+
+	// metrics
+	private static final AtomicLong totalFailures = new AtomicLong();
+	private static final AtomicLong noDataHits = new AtomicLong();
+
+	static void recordFailure(UUID uuid) {
+		long now = System.currentTimeMillis();
+		totalFailures.incrementAndGet();
+
+		Failure failure = failures.compute(uuid, (k, previous) -> {
+			int count = previous == null ? 1 : previous.count + 1;
+			return new Failure(count, now + delay(count));
+		});
+
+		DebugMode.log("Lookup for {} has failed {} time(s), retrying in {}ms", uuid, failure.count, failure.retryAt - now);
+	}
+
+	/**
+	 * Record a successful lookup.
+	 * @param empty whether the player turned out to have no cosmetics.
+	 */
+	static void recordSuccess(UUID uuid, boolean empty) {
+		failures.remove(uuid);
+
+		if (empty) {
+			noData.put(uuid, System.currentTimeMillis() + NO_DATA_TTL_MS);
+		} else {
+			noData.remove(uuid);
+		}
+	}
+
+	/**
+	 * @return whether a failed lookup for the given player is due to be retried.
+	 */
+	static boolean mayRetry(UUID uuid) {
+		Failure failure = failures.get(uuid);
+		return failure == null || System.currentTimeMillis() >= failure.retryAt;
+	}
+
+	/**
+	 * @return whether the given player was recently found to have no cosmetics.
+	 */
+	static boolean hasNoData(UUID uuid) {
+		Long expiry = noData.get(uuid);
+		if (expiry == null) return false;
+
+		if (System.currentTimeMillis() >= expiry) {
+			noData.remove(uuid, expiry);
+			return false;
+		}
+
+		noDataHits.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Forget what we know about the given player, for example because they have updated their cosmetics.
+	 */
+	public static void forget(UUID uuid) {
+		failures.remove(uuid);
+		noData.remove(uuid);
+	}
+
+	/**
+	 * Forget failures whose backoff ran out long ago, and players whose lack of cosmetics is no longer trusted. Failed
+	 * players who left before being retried would otherwise be remembered forever.
+	 */
+	static void prune() {
+		long now = System.currentTimeMillis();
+		failures.values().removeIf(failure -> now - failure.retryAt > MAX_DELAY_MS);
+		noData.values().removeIf(expiry -> now >= expiry);
+	}
+
+	/**
+	 * Forget which players have no cosmetics, for example because our settings have changed what we are sent.
+	 */
+	public static void clearNoData() {
+		noData.clear();
+	}
+
+	public static String getStats() {
+		return "Lookup failures: " + totalFailures.get()
+				+ ", players backing off: " + failures.size()
+				+ ", known without cosmetics: " + noData.size()
+				+ " (" + noDataHits.get() + " lookups saved)";
+	}
+
+	/**
+	 * Get the delay before the given attempt, doubling each time up to the maximum, with up to 50% jitter either way so
+	 * retries for players who failed together are spread out.
+	 */
+	private static long delay(int attempt) {
+		long delay = BASE_DELAY_MS << Math.min(attempt - 1, 20);
+		delay = Math.min(delay, MAX_DELAY_MS);
+		return (long) (delay * ThreadLocalRandom.current().nextDouble(0.5, 1.5));
+	}
+
+	private record Failure(int count, long retryAt) {
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica.cosmetics;
+
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
+import cc.cosmetica.cosmetica.Cosmetica;
+import cc.cosmetica.cosmetica.ThreadPool;
+import cc.cosmetica.cosmetica.utils.DebugMode;
+import net.minecraft.client.resources.DefaultPlayerSkin;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects player data lookups which missed the cache over a short window, and dispatches them together as one batch.
+ * Pending lookups are flushed on the texture tick once the window has elapsed or the batch is full.
+ */
+public final class LookupCoalescer {
+	private static final long WINDOW_MS = Long.parseLong(System.getProperty("cosmetica.lookupBatchWindow", "100"));
+	private static final int MAX_BATCH_SIZE = Integer.parseInt(System.getProperty("cosmetica.lookupBatchSize", "64"));
+
+	private static final List<Request> pending = new ArrayList<>();
+	private static long windowOpened;
+
+	// metrics
+	private static final AtomicLong batches = new AtomicLong();
+	private static final AtomicLong batchedRequests = new AtomicLong();
+	private static final AtomicInteger largestBatch = new AtomicInteger();
+	private static final AtomicLong resolved = new AtomicLong();
+	private static final AtomicLong totalTimeToFirstCosmetic = new AtomicLong();
+	private static final AtomicLong slowestTimeToFirstCosmetic = new AtomicLong();
+
+	/**
+	 * Queue a lookup for the given player. It will be sent with the next batch.
+	 */
+	static void queue(UUID uuid, String username, Level level, CompletableFuture<PlayerData> future) {
+		synchronized (pending) {
+			long now = System.currentTimeMillis();
+
+			if (pending.isEmpty()) {
+				windowOpened = now;
+			}
+
+			pending.add(new Request(uuid, username, level, now, future));
+		}
+	}
+
+	/**
+	 * Remove the given player's lookup from the pending batch, so the caller can perform it immediately.
+	 * @return the pending request, or null if the player has no lookup waiting to be batched.
+	 */
+	@Nullable
+	static Request expedite(UUID uuid) {
+		synchronized (pending) {
+			for (Iterator<Request> iterator = pending.iterator(); iterator.hasNext();) {
+				Request request = iterator.next();
+
+				if (request.uuid().equals(uuid)) {
+					iterator.remove();
+					return request;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Dispatches the pending batch if the window has elapsed or the batch is full. Called every texture tick.
+	 */
+	public static void tick() {
+		List<Request> batch;
+		int room = DebugMode.lookupStandIn() ? MAX_BATCH_SIZE : Math.min(MAX_BATCH_SIZE, LookupScheduler.remainingCapacity());
+
+		synchronized (pending) {
+			if (pending.isEmpty()) return;
+			if (pending.size() < MAX_BATCH_SIZE && System.currentTimeMillis() - windowOpened < WINDOW_MS) return;
+			// if the lookup threads are backed up, or the API is down, hold on to the batch until later
+			if (room <= 0 || !ApiCircuitBreaker.allowsRequests()) return;
+
+			List<Request> head = pending.subList(0, Math.min(pending.size(), room));
+			batch = new ArrayList<>(head);
+			head.clear();
+			windowOpened = System.currentTimeMillis();
+		}
+
+		List<Request> relevant = new ArrayList<>(batch.size());
+
+		for (Request request : batch) {
+			// don't make the request if the level changed (in case the players are different between levels), or the player left!
+			if (Cosmetica.api == null || LookupScheduler.isStale(request.uuid(), request.level())) {
+				PlayerData.cancelLookup(request.uuid(), request.future());
+			} else {
+				relevant.add(request);
+			}
+		}
+
+		if (relevant.isEmpty()) return;
+
+		batches.incrementAndGet();
+		batchedRequests.addAndGet(relevant.size());
+		largestBatch.accumulateAndGet(relevant.size(), Math::max);
+
+		DebugMode.log("Dispatching batch of {} player lookups", relevant.size());
+		(DebugMode.lookupStandIn() ? STAND_IN : INDIVIDUAL).dispatch(relevant);
+	}
+
+	/**
+	 * Publish the result of a lookup into the player data cache.
+	 */
+	static void resolve(Request request, PlayerData data) {
+		long elapsed = System.currentTimeMillis() - request.queuedAt();
+		resolved.incrementAndGet();
+		totalTimeToFirstCosmetic.addAndGet(elapsed);
+		slowestTimeToFirstCosmetic.accumulateAndGet(elapsed, Math::max);
+
+		PlayerData.finishLookup(request.uuid(), request.future(), data);
+	}
+
+	static void fail(Request request, RuntimeException e) {
+		if (e instanceof ApiCircuitBreaker.CircuitOpenException) {
+			DebugMode.log("Lookup for {} rejected: {}", request.uuid(), e.getMessage());
+		} else {
+			Cosmetica.LOGGER.error("Error getting user info for " + request.uuid() + " / " + request.username() + ": ", e);
+		}
+
+		PlayerData.failLookup(request.uuid(), request.future());
+	}
+
+	public static int getPendingCount() {
+		synchronized (pending) {
+			return pending.size();
+		}
+	}
+
+	public static String getStats() {
+		long batchCount = batches.get();
+		long resolvedCount = resolved.get();
+
+		return "Lookup batches: " + batchCount
+				+ ", mean size: " + (batchCount == 0 ? 0 : batchedRequests.get() / batchCount)
+				+ ", largest: " + largestBatch.get()
+				+ ", pending: " + getPendingCount()
+				+ ", mean time to first cosmetic: " + (resolvedCount == 0 ? 0 : totalTimeToFirstCosmetic.get() / resolvedCount) + "ms"
+				+ ", slowest: " + slowestTimeToFirstCosmetic.get() + "ms";
+	}
+
+	/**
+	 * A queued lookup.
+	 * @param uuid the uuid of the player.
+	 * @param username the username of the player.
+	 * @param level the level the lookup was made in. Lookups are dropped if the level changes before they are sent.
+	 * @param queuedAt the time, in ms, at which the lookup was queued.
+	 * @param future the in-flight lookup this request completes.
+	 */
+	public record Request(UUID uuid, String username, Level level, long queuedAt, CompletableFuture<PlayerData> future) {
+	}
+
+	/**
+	 * Somewhere batches of lookups can be sent. Implementations must call {@link LookupCoalescer#resolve} or
+	 * {@link LookupCoalescer#fail} exactly once for each request in the batch, and should not block the calling thread.
+	 */
+	interface Source {
+		void dispatch(List<Request> batch);
+	}
+
+	/**
+	 * The Cosmetica API has no multi-user endpoint, so this source sends the batch as individual requests, which the
+	 * {@link LookupScheduler} runs in order of priority.
+	 */
+	private static final Source INDIVIDUAL = batch -> {
+		for (Request request : batch) {
+			boolean queued = LookupScheduler.submit(request.uuid(), request.level(), () -> {
+				DebugMode.log("Looking up player info for " + request.uuid() + " (" + request.username() + ")");
+
+				ApiCircuitBreaker.call(() -> Cosmetica.api.getUserInfo(request.uuid(), request.username())).ifSuccessfulOrElse(
+						info -> resolve(request, PlayerData.fromLookup(request.uuid(), info)),
+						e -> fail(request, e)
+				);
+			}, () -> PlayerData.cancelLookup(request.uuid(), request.future()));
+
+			if (!queued) {
+				PlayerData.cancelLookup(request.uuid(), request.future());
+			}
+		}
+	};
+
+	/**
+	 * Local stand-in for a multi-user endpoint, for testing batching without touching the API. Answers each batch in a
+	 * single "request" after a simulated delay, giving every player a lore showing which batch they were in.
+	 */
+	private static final Source STAND_IN = batch -> Cosmetica.runOffthread(() -> {
+		try {
+			Thread.sleep(DebugMode.lookupStandInLatency());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		String lore = "Batch #" + batches.get() + " (" + batch.size() + ")";
+
+		for (Request request : batch) {
+			resolve(request, new PlayerData(lore, false, null, true, "", "", new ArrayList<>(), CapeData.NO_CAPE, null, null, null, DefaultPlayerSkin.getDefaultSkin(request.uuid()), false));
+		}
+	}, ThreadPool.GENERAL_THREADS);
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica.cosmetics;
+
+import cc.cosmetica.cosmetica.Cosmetica;
+import cc.cosmetica.cosmetica.mixin.LevelRendererAccessor;
+import cc.cosmetica.cosmetica.utils.NamedThreadFactory;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientPacketListener;
+import net.minecraft.client.renderer.culling.Frustum;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The worker threads behind {@link Cosmetica#runOffthread}. General tasks run first, in the order they were submitted.
+ * Player lookups run after them, nearest visible players first, then nearest players out of view, then players only
+ * in the tab list.
+ *
+ * <p>Lookup priorities are recalculated every texture tick, at which point lookups for players who have left or from a
+ * previous level are cancelled. At most {@code cosmetica.lookupQueueSize} lookups can be queued; beyond that, callers
+ * are expected to hold on to their lookups until there is room (see {@link LookupCoalescer}).</p>
+ */
+public final class LookupScheduler {
+	private static final int THREADS = Integer.parseInt(System.getProperty("cosmetica.lookupThreads", "8"));
+	private static final int MAX_QUEUED_LOOKUPS = Integer.parseInt(System.getProperty("cosmetica.lookupQueueSize", "128"));
+
+	// priority tiers, from most to least urgent. Within a tier, lookups are ordered by distance
+	private static final double VISIBLE = 0;
+	private static final double OUT_OF_VIEW = 1e9;
+	private static final double TAB_LIST_ONLY = 2e9;
+	private static final double EXPEDITED = -1;
+
+	private static final Object lock = new Object();
+	private static final ArrayDeque<Runnable> general = new ArrayDeque<>();
+	private static final List<Task> lookups = new ArrayList<>();
+	private static final List<Thread> workers = new ArrayList<>(THREADS);
+	private static boolean shutdown = false;
+	private static long nextSequence = 0;
+
+	// metrics
+	private static final AtomicLong executed = new AtomicLong();
+	private static final AtomicLong cancelled = new AtomicLong();
+
+	static {
+		ThreadFactory factory = new NamedThreadFactory("Cosmetica Lookup Thread");
+
+		for (int i = 0; i < THREADS; i++) {
+			Thread worker = factory.newThread(LookupScheduler::work);
+			workers.add(worker);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Run a general task as soon as a thread is free.
+	 */
+	public static void execute(Runnable task) {
+		synchronized (lock) {
+			if (shutdown) return;
+			general.add(task);
+			lock.notify();
+		}
+	}
+
+	/**
+	 * Queue a lookup for the given player.
+	 * @param level the level the lookup was made in. The lookup is cancelled if this is no longer the current level.
+	 * @param task the lookup.
+	 * @param onCancel called instead of the task if the lookup is cancelled.
+	 * @return whether the lookup was queued. If false, the queue is full and neither callback will be called.
+	 */
+	static boolean submit(UUID uuid, @Nullable Level level, Runnable task, Runnable onCancel) {
+		synchronized (lock) {
+			if (shutdown || lookups.size() >= MAX_QUEUED_LOOKUPS) return false;
+
+			lookups.add(new Task(uuid, level, task, onCancel, nextSequence++));
+			lock.notify();
+			return true;
+		}
+	}
+
+	/**
+	 * @return how many more lookups can be queued before the queue is full.
+	 */
+	static int remainingCapacity() {
+		synchronized (lock) {
+			return MAX_QUEUED_LOOKUPS - lookups.size();
+		}
+	}
+
+	/**
+	 * Move the lookup for the given player to the front of the queue, for when something is waiting on it.
+	 */
+	static void expedite(UUID uuid) {
+		synchronized (lock) {
+			for (Task task : lookups) {
+				if (task.uuid.equals(uuid)) task.priority = EXPEDITED;
+			}
+		}
+	}
+
+	/**
+	 * Check whether a lookup for the given player is no longer wanted, because the level has changed, or the player is
+	 * neither in the level nor the tab list. Must be called on the render thread.
+	 */
+	static boolean isStale(UUID uuid, @Nullable Level level) {
+		Minecraft minecraft = Minecraft.getInstance();
+		if (minecraft.level != level) return true;
+		if (level == null) return false; // e.g. in menus
+
+		ClientPacketListener connection = minecraft.getConnection();
+		return level.getPlayerByUUID(uuid) == null && (connection == null || connection.getPlayerInfo(uuid) == null);
+	}
+
+	/**
+	 * Recalculate the priority of queued lookups from the camera, and cancel stale ones. Called every texture tick.
+	 */
+	public static void tick() {
+		Minecraft minecraft = Minecraft.getInstance();
+		Level level = minecraft.level;
+		Vec3 camera = minecraft.gameRenderer.getMainCamera().getPosition();
+		@Nullable Frustum frustum = ((LevelRendererAccessor) minecraft.levelRenderer).getCullingFrustum(); // null until the first frame
+		List<Task> stale = new ArrayList<>();
+
+		synchronized (lock) {
+			if (lookups.isEmpty()) return;
+
+			for (Iterator<Task> iterator = lookups.iterator(); iterator.hasNext();) {
+				Task task = iterator.next();
+
+				if (isStale(task.uuid, task.level)) {
+					iterator.remove();
+					stale.add(task);
+				} else if (task.priority != EXPEDITED && level != null) {
+					Player player = level.getPlayerByUUID(task.uuid);
+
+					if (player == null) {
+						task.priority = TAB_LIST_ONLY;
+					} else {
+						boolean visible = frustum == null || frustum.isVisible(player.getBoundingBoxForCulling());
+						task.priority = (visible ? VISIBLE : OUT_OF_VIEW) + player.distanceToSqr(camera);
+					}
+				}
+			}
+		}
+
+		for (Task task : stale) {
+			cancelled.incrementAndGet();
+			task.onCancel.run();
+		}
+	}
+
+	public static void shutdown() {
+		synchronized (lock) {
+			shutdown = true;
+			general.clear();
+			lookups.clear();
+			lock.notifyAll();
+		}
+
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+	}
+
+	public static String getStats() {
+		synchronized (lock) {
+			return "Lookup queue: " + lookups.size() + "/" + MAX_QUEUED_LOOKUPS
+					+ ", general tasks: " + general.size()
+					+ ", lookups run: " + executed.get()
+					+ ", cancelled: " + cancelled.get();
+		}
+	}
+
+	private static void work() {
+		while (true) {
+			Runnable next;
+
+			synchronized (lock) {
+				while ((next = poll()) == null) {
+					if (shutdown) return;
+
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+
+			try {
+				next.run();
+			} catch (RuntimeException e) {
+				Cosmetica.LOGGER.error("Uncaught exception in off-thread task", e);
+			}
+		}
+	}
+
+	/**
+	 * Take the most urgent task from the queue. Must be called while holding the lock.
+	 */
+	@Nullable
+	private static Runnable poll() {
+		if (shutdown) return null;
+
+		Runnable task = general.poll();
+		if (task != null) return task;
+
+		Task best = null;
+
+		for (Task lookup : lookups) {
+			if (best == null || lookup.priority < best.priority || (lookup.priority == best.priority && lookup.sequence < best.sequence)) {
+				best = lookup;
+			}
+		}
+
+		if (best == null) return null;
+
+		lookups.remove(best);
+		executed.incrementAndGet();
+		return best.task;
+	}
+
+	private static final class Task {
+		Task(UUID uuid, @Nullable Level level, Runnable task, Runnable onCancel, long sequence) {
+			this.uuid = uuid;
+			this.level = level;
+			this.task = task;
+			this.onCancel = onCancel;
+			this.sequence = sequence;
+		}
+
+		final UUID uuid;
+		final @Nullable Level level;
+		final Runnable task;
+		final Runnable onCancel;
+		final long sequence;
+		/**
+		 * Lower is more urgent. Lookups start at the back of the queue until their first tick.
+		 */
+		double priority = TAB_LIST_ONLY;
+	}
+}
@@ -16,11 +16,18 @@
 
 package cc.cosmetica.cosmetica.cosmetics;
 
+import cc.cosmetica.api.UserInfo;
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
 import cc.cosmetica.cosmetica.Cosmetica;
+import cc.cosmetica.cosmetica.CosmeticaSkinManager;
 import cc.cosmetica.cosmetica.ThreadPool;
 import cc.cosmetica.cosmetica.cosmetics.model.BakableModel;
+import cc.cosmetica.cosmetica.cosmetics.model.Models;
 import cc.cosmetica.cosmetica.utils.DebugMode;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.PlayerInfo;
 import net.minecraft.client.resources.DefaultPlayerSkin;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.entity.player.Player;
@@ -28,6 +35,9 @@ import net.minecraft.world.level.Level;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -128,6 +138,41 @@ public final class PlayerData {
 
 	// --
 
+	/**
+	 * Take a reference to each texture and model this player data uses, so they stay loaded while it is cached.
+	 */
+	private void retainResources() {
+		CosmeticaSkinManager.retain(this.icon);
+		CosmeticaSkinManager.retain(this.cape.getActualImage());
+		CosmeticaSkinManager.retain(this.skin);
+
+		for (BakableModel hat : this.hats) {
+			Models.retain(hat);
+		}
+
+		Models.retain(this.leftShoulderBuddy);
+		Models.retain(this.rightShoulderBuddy);
+		Models.retain(this.backBling);
+	}
+
+	/**
+	 * Release the references taken by {@link PlayerData#retainResources()}. Textures and models no longer used by any
+	 * cached player are unloaded.
+	 */
+	private void releaseResources() {
+		CosmeticaSkinManager.release(this.icon);
+		CosmeticaSkinManager.release(this.cape.getActualImage());
+		CosmeticaSkinManager.release(this.skin);
+
+		for (BakableModel hat : this.hats) {
+			Models.release(hat);
+		}
+
+		Models.release(this.leftShoulderBuddy);
+		Models.release(this.rightShoulderBuddy);
+		Models.release(this.backBling);
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (obj == this) return true;
@@ -171,81 +216,240 @@ public final class PlayerData {
 				"slim=" + slim + ']';
 	}
 
+	/**
+	 * Create player data for a player with no cosmetics.
+	 */
+	public static PlayerData empty(UUID uuid) {
+		return new PlayerData("", false, null, false, "", "", new ArrayList<>(), CapeData.NO_CAPE, null, null, null, DefaultPlayerSkin.getDefaultSkin(uuid), false);
+	}
+
 	public static PlayerData NONE      = new PlayerData("", false, null, false, "", "", new ArrayList<>(), CapeData.NO_CAPE, null, null, null, DefaultPlayerSkin.getDefaultSkin(), false);
 	public static PlayerData TEMPORARY = new PlayerData("", false, null, false, "", "", new ArrayList<>(), CapeData.NO_CAPE, null, null, null, DefaultPlayerSkin.getDefaultSkin(), false);
 
-	private static Map<UUID, PlayerData> playerDataCache = new HashMap<>();
-	private static Set<UUID> lookingUp = new HashSet<>();
+	/**
+	 * The maximum number of players to keep data cached for. Once exceeded, the least recently used players are evicted.
+	 */
+	private static final int MAX_CACHE_SIZE = Integer.parseInt(System.getProperty("cosmetica.playerCacheSize", "1024"));
+	/**
+	 * How long, in ms, a player's data can go unused before it is evicted.
+	 */
+	private static final long MAX_IDLE_MS = 1000L * Long.parseLong(System.getProperty("cosmetica.playerCacheIdleSeconds", "600"));
+
+	private static final Map<UUID, CacheEntry> playerDataCache = new ConcurrentHashMap<>();
+	/**
+	 * Lookups currently in flight. Every caller asking for a player while their lookup is in flight shares the same future.
+	 */
+	private static final Map<UUID, CompletableFuture<PlayerData>> lookingUp = new ConcurrentHashMap<>();
+
+	// metrics
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+	private static final AtomicLong diskHits = new AtomicLong();
+	private static final AtomicLong evictions = new AtomicLong();
 
 	public static PlayerData get(Player player) {
+		if (player instanceof PlayerDataHolder holder) {
+			return get(holder.getPlayerDataHandle(), player.getUUID(), player.getGameProfile().getName());
+		}
+
 		return get(player.getUUID(), player.getName().getString(), false);
 	}
 
+	public static PlayerData get(PlayerInfo playerInfo) {
+		return get(((PlayerDataHolder) playerInfo).getPlayerDataHandle(), playerInfo.getProfile().getId(), playerInfo.getProfile().getName());
+	}
+
+	/**
+	 * Get the player data for the given player through their handle. While the cache entry the handle refers to is
+	 * current, this is a plain field read. Otherwise, it falls back to {@link PlayerData#get(UUID, String, boolean)} and
+	 * the handle is pointed at the new entry.
+	 */
+	private static PlayerData get(Handle handle, UUID uuid, String username) {
+		CacheEntry entry = handle.entry;
+
+		if (entry != null && !entry.removed && !entry.stale && entry.data != PlayerData.TEMPORARY) {
+			entry.lastUsed = Util.getMillis();
+			hits.incrementAndGet();
+			return entry.data;
+		}
+
+		PlayerData data = get(uuid, username, false);
+		handle.entry = playerDataCache.get(uuid);
+		return data;
+	}
+
+	/**
+	 * Get the player data for the given player, starting a lookup if there is none.
+	 * Asynchronous requests never block, and return {@link PlayerData#NONE} while the lookup is in progress.
+	 * Synchronous requests wait for the lookup to finish, joining one already in flight if it exists.
+	 */
 	public static PlayerData get(UUID uuid, String username, boolean sync) {
 		if (Cosmetica.isProbablyNPC(uuid)) return PlayerData.NONE;
 
+		// if existing data exists
+		CacheEntry existing = playerDataCache.get(uuid);
+
+		if (existing != null) {
+			existing.lastUsed = Util.getMillis();
+			// temporary data without a lookup in flight means the lookup failed. Retry once it has backed off
+			boolean retry = existing.data == PlayerData.TEMPORARY && !lookingUp.containsKey(uuid) && LookupBackoff.mayRetry(uuid);
+
+			// synchronised requests do not want temporary or stale data returned!
+			if (!retry && !(sync && (existing.data == PlayerData.TEMPORARY || existing.stale))) {
+				if (existing.data != PlayerData.TEMPORARY) hits.incrementAndGet();
+				// keep showing stale data until the refreshed data replaces it
+				if (existing.stale) revalidate(uuid, username);
+				return existing.data;
+			}
+		}
+
+		if (!sync && lookingUp.containsKey(uuid)) {
+			return PlayerData.NONE;
+		}
+
 		Level level = Minecraft.getInstance().level;
+		CompletableFuture<PlayerData> lookup = new CompletableFuture<>();
+		CompletableFuture<PlayerData> inFlight = lookingUp.putIfAbsent(uuid, lookup);
 
-		// if existing data exists
+		if (inFlight == null) {
+			// start a new lookup
+			CacheEntry raced = playerDataCache.putIfAbsent(uuid, new CacheEntry(PlayerData.TEMPORARY));
+
+			if (raced != null && raced.data != PlayerData.TEMPORARY && !raced.stale) { // another lookup finished in between
+				lookingUp.remove(uuid, lookup);
+				lookup.complete(raced.data);
+				return raced.data;
+			}
 
-		synchronized (playerDataCache) {
-			PlayerData existing = playerDataCache.get(uuid);
+			misses.incrementAndGet();
+
+			if (!sync && LookupBackoff.hasNoData(uuid)) { // we recently found out they have no cosmetics
+				PlayerData empty = PlayerData.empty(uuid);
+				finishLookup(uuid, lookup, empty);
+				return empty;
+			}
+
+			if (sync) {
+				return lookupPlayerData(uuid, username, level, lookup);
+			}
 
-			if (existing != null) {
-				// synchronised requests do not want temporary data returned!
-				if (!(sync && existing == PlayerData.TEMPORARY)) {
-					return existing;
-				}
+			// players seen in a previous session can be loaded from disk without a lookup
+			if (PlayerDiskCache.contains(uuid)) {
+				Cosmetica.runOffthread(() -> loadFromDisk(uuid, username, level, lookup), ThreadPool.GENERAL_THREADS);
 			} else {
-				// start a new lookup
-				lookingUp.add(uuid);
-				playerDataCache.put(uuid, PlayerData.TEMPORARY);
+				LookupCoalescer.queue(uuid, username, level, lookup);
 			}
+
+			return PlayerData.NONE;
 		}
 
 		if (sync) {
-			return lookupPlayerData(uuid, username, level);
-		} else {
-			Cosmetica.runOffthread(() -> {
-				if (Cosmetica.api == null || Minecraft.getInstance().level != level) { // don't make the request if the level changed (in case the players are different between levels)!
-					synchronized (playerDataCache) { // make sure temp values are removed
-						playerDataCache.remove(uuid);
-						lookingUp.remove(uuid);
-					}
-				}
+			// if the lookup is still waiting to be batched, take it over rather than waiting for the batch
+			LookupCoalescer.Request queued = LookupCoalescer.expedite(uuid);
 
-				lookupPlayerData(uuid, username, level);
-			}, ThreadPool.GENERAL_THREADS);
+			if (queued != null) {
+				return lookupPlayerData(uuid, queued.username(), queued.level(), queued.future());
+			}
 
-			return PlayerData.NONE;
+			LookupScheduler.expedite(uuid);
+			return inFlight.join();
 		}
+
+		return PlayerData.NONE;
 	}
 
-	private static PlayerData lookupPlayerData(UUID uuid, String username, Level level) {
+	/**
+	 * Start a lookup to replace stale data, if there isn't one already. The stale data stays in the cache until then.
+	 */
+	private static void revalidate(UUID uuid, String username) {
+		if (lookingUp.containsKey(uuid) || !LookupBackoff.mayRetry(uuid)) return;
+
+		CompletableFuture<PlayerData> lookup = new CompletableFuture<>();
+
+		if (lookingUp.putIfAbsent(uuid, lookup) == null) {
+			DebugMode.log("Revalidating player data for {}", uuid);
+			LookupCoalescer.queue(uuid, username, Minecraft.getInstance().level, lookup);
+		}
+	}
+
+	private static PlayerData lookupPlayerData(UUID uuid, String username, Level level, CompletableFuture<PlayerData> lookup) {
 		DebugMode.log("Looking up player info for " + uuid + " (" + username + ")");
 		AtomicReference<PlayerData> newDataHolder = new AtomicReference<>(PlayerData.NONE);
 
-		Cosmetica.api.getUserInfo(uuid, username).ifSuccessfulOrElse(info -> {
-			PlayerData newData = Cosmetica.newPlayerData(info, uuid);
+		ApiCircuitBreaker.call(() -> Cosmetica.api.getUserInfo(uuid, username)).ifSuccessfulOrElse(info -> {
+			PlayerData newData = fromLookup(uuid, info);
+			finishLookup(uuid, lookup, newData);
+			newDataHolder.set(newData);
+		}, Cosmetica.logErr("Error getting user info for " + uuid + " / " + username).andThen(re -> failLookup(uuid, lookup)));
 
-			synchronized (playerDataCache) { // update the information with what we have gotten.
-				playerDataCache.put(uuid, newData);
-				lookingUp.remove(uuid);
-			}
+		return newDataHolder.get();
+	}
 
-			newDataHolder.set(newData);
-		}, Cosmetica.logErr("Error getting user info for " + uuid + " / " + username).andThen(re -> {
-			synchronized (playerDataCache) {
-				// check no other thread has gotten there first.
-				// This could still be mistriggered if, say, level changes, player data is cleared, and a new request is made
-				// So we check level too.
-				if (Minecraft.getInstance().level == level && playerDataCache.get(uuid) == PlayerData.TEMPORARY) {
-					lookingUp.remove(uuid);
-				}
+	private static void loadFromDisk(UUID uuid, String username, Level level, CompletableFuture<PlayerData> lookup) {
+		CachedUserInfo info = PlayerDiskCache.read(uuid);
+
+		if (info == null) { // couldn't be read after all
+			LookupCoalescer.queue(uuid, username, level, lookup);
+		} else {
+			DebugMode.log("Loaded player info for {} from the disk cache", uuid);
+			diskHits.incrementAndGet();
+			finishLookup(uuid, lookup, Cosmetica.newPlayerData(info, uuid));
+		}
+	}
+
+	/**
+	 * Create player data from a lookup response, storing it in the disk cache for future sessions. The local player is
+	 * not stored, as their own cosmetics should always be up to date.
+	 */
+	static PlayerData fromLookup(UUID uuid, UserInfo info) {
+		CachedUserInfo cached = CachedUserInfo.of(info);
+		LookupBackoff.recordSuccess(uuid, cached.hasNoCosmetics());
+
+		if (!uuid.toString().equals(Cosmetica.dashifyUUID(Minecraft.getInstance().getUser().getUuid()))) {
+			PlayerDiskCache.store(uuid, cached);
+		}
+
+		return Cosmetica.newPlayerData(cached, uuid);
+	}
+
+	/**
+	 * Publish the result of a lookup. The result is discarded if the lookup was superseded, for example by the cache
+	 * being cleared while it was in flight.
+	 */
+	static void finishLookup(UUID uuid, CompletableFuture<PlayerData> lookup, PlayerData newData) {
+		if (lookingUp.remove(uuid, lookup)) {
+			CacheEntry current = playerDataCache.get(uuid);
+
+			if (current != null && current.data != PlayerData.TEMPORARY && current.data.equals(newData)) {
+				// nothing changed, so keep what we have
+				current.stale = false;
+				newData = current.data;
+			} else {
+				// the new data is retained before the old is released, so textures and models in both stay loaded
+				newData.retainResources();
+				// update the information with what we have gotten.
+				CacheEntry previous = playerDataCache.put(uuid, new CacheEntry(newData));
+				if (previous != null) release(previous);
 			}
-		}));
+		}
 
-		return newDataHolder.get();
+		lookup.complete(newData);
+	}
+
+	static void failLookup(UUID uuid, CompletableFuture<PlayerData> lookup) {
+		// the temporary data is left in place so the lookup isn't retried every frame, only once it has backed off
+		LookupBackoff.recordFailure(uuid);
+		lookingUp.remove(uuid, lookup);
+		lookup.complete(PlayerData.NONE);
+	}
+
+	static void cancelLookup(UUID uuid, CompletableFuture<PlayerData> lookup) {
+		if (lookingUp.remove(uuid, lookup)) { // make sure temp values are removed
+			CacheEntry entry = playerDataCache.get(uuid);
+			if (entry != null && entry.data == PlayerData.TEMPORARY && playerDataCache.remove(uuid, entry)) entry.removed = true;
+		}
+
+		lookup.complete(PlayerData.NONE);
 	}
 
 	/**
@@ -254,36 +458,138 @@ public final class PlayerData {
 	 * @return whether the player currently has data stored.
 	 */
 	public static boolean has(UUID uuid) {
-		synchronized (playerDataCache) {
-			return playerDataCache.containsKey(uuid);
-		}
+		return playerDataCache.containsKey(uuid);
 	}
 
+	@Nullable
 	public static PlayerData getCached(UUID player) {
-		synchronized (playerDataCache) {
-			return playerDataCache.get(player);
-		}
+		CacheEntry entry = playerDataCache.get(player);
+		return entry == null ? null : entry.data;
+	}
+
+	/**
+	 * Mark the given player's data as out of date. It is still returned by {@link PlayerData#get} until fresh data
+	 * replaces it, except to synchronous requests.
+	 */
+	public static void markStale(UUID uuid) {
+		CacheEntry entry = playerDataCache.get(uuid);
+		if (entry != null) entry.stale = true;
 	}
 
 	public static void clear(UUID uuid) {
-		synchronized (playerDataCache) {
-			playerDataCache.remove(uuid);
-		}
+		CacheEntry removed = playerDataCache.remove(uuid);
+		if (removed != null) release(removed);
 	}
 
 	public static int getCacheSize() {
-		synchronized (playerDataCache) {
-			return playerDataCache.size();
-		}
+		return playerDataCache.size();
 	}
 
 	public static Collection<UUID> getCachedPlayers() {
-		synchronized (playerDataCache) {
-			return playerDataCache.keySet();
+		return playerDataCache.keySet();
+	}
+
+	/**
+	 * Evict players whose data has gone unused for too long, then the least recently used players until the cache is
+	 * within its maximum size. The local player is never evicted.
+	 */
+	public static void evictColdEntries() {
+		long now = Util.getMillis();
+		UUID self = UUID.fromString(Cosmetica.dashifyUUID(Minecraft.getInstance().getUser().getUuid()));
+		List<Map.Entry<UUID, CacheEntry>> candidates = new ArrayList<>(playerDataCache.size());
+
+		for (Map.Entry<UUID, CacheEntry> entry : playerDataCache.entrySet()) {
+			// don't evict ourselves, or players still being looked up
+			if (entry.getKey().equals(self) || lookingUp.containsKey(entry.getKey())) continue;
+
+			if (now - entry.getValue().lastUsed > MAX_IDLE_MS) {
+				evict(entry.getKey(), entry.getValue());
+			} else {
+				candidates.add(entry);
+			}
+		}
+
+		int excess = playerDataCache.size() - MAX_CACHE_SIZE;
+
+		if (excess > 0) {
+			candidates.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+
+			for (int i = 0; i < excess && i < candidates.size(); i++) {
+				evict(candidates.get(i).getKey(), candidates.get(i).getValue());
+			}
 		}
+
+		LookupBackoff.prune();
+	}
+
+	private static void evict(UUID uuid, CacheEntry entry) {
+		if (playerDataCache.remove(uuid, entry)) {
+			DebugMode.log("Evicting player data for {}", uuid);
+			evictions.incrementAndGet();
+			release(entry);
+		}
+	}
+
+	public static String getStats() {
+		return "Player data cache: " + playerDataCache.size() + "/" + MAX_CACHE_SIZE
+				+ ", in flight: " + lookingUp.size()
+				+ ", hits: " + hits.get()
+				+ ", misses: " + misses.get()
+				+ ", loaded from disk: " + diskHits.get()
+				+ ", evictions: " + evictions.get();
 	}
 
 	public static void clearCaches() {
-		playerDataCache = new HashMap<>();
+		for (UUID uuid : playerDataCache.keySet()) {
+			clear(uuid);
+		}
+
+		// anyone waiting on an outstanding lookup gets nothing, and the lookup's result will be discarded
+		for (UUID uuid : lookingUp.keySet()) {
+			CompletableFuture<PlayerData> lookup = lookingUp.remove(uuid);
+			if (lookup != null) lookup.complete(PlayerData.NONE);
+		}
+	}
+
+	/**
+	 * Release the textures and models used by an entry no longer in the cache, and let handles to it know it is gone.
+	 * Releasing is always done on the render thread, as that is where textures are released and models are baked.
+	 */
+	private static void release(CacheEntry entry) {
+		entry.removed = true;
+		PlayerData data = entry.data;
+
+		if (RenderSystem.isOnRenderThread()) {
+			data.releaseResources();
+		} else {
+			RenderSystem.recordRenderCall(data::releaseResources);
+		}
+	}
+
+	private static final class CacheEntry {
+		CacheEntry(PlayerData data) {
+			this.data = data;
+			this.lastUsed = Util.getMillis();
+		}
+
+		final PlayerData data;
+		volatile long lastUsed;
+		/**
+		 * Whether the safari has told us this data is out of date.
+		 */
+		volatile boolean stale;
+		/**
+		 * Whether this entry has been replaced or removed from the cache, meaning handles to it need refreshing.
+		 */
+		volatile boolean removed;
+	}
+
+	/**
+	 * A reference to a player's cache entry, kept on the player (or their tab list entry) by {@link PlayerDataHolder},
+	 * so hot callers don't need to look the player up in the cache every frame.
+	 */
+	public static final class Handle {
+		@Nullable
+		private CacheEntry entry;
 	}
-}
\ No newline at end of file
+}
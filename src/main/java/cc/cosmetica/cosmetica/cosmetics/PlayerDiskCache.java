@@ -0,0 +1,493 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica.cosmetics;
+
+import cc.cosmetica.cosmetica.Cosmetica;
+import cc.cosmetica.cosmetica.utils.DebugMode;
+import net.minecraft.Util;
+import org.apache.commons.codec.binary.Base64;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Persists user info between sessions, so players seen recently can be shown with their cosmetics without a lookup.
+ *
+ * <p>Textures and model json are stored apart from the players using them, as blobs keyed by a hash of their content,
+ * so a cosmetic worn by many players is stored once. The file consists of a header (magic, version, safari timestamp,
+ * entry count, blob count, index length), followed by an index of every entry's uuid, save time, length, and the blobs
+ * it uses, then of every blob's key and length, followed by the deflated entries and then the deflated blobs, in index
+ * order. Only the header and index are read on load; entries and blobs are read from disk as players are seen.</p>
+ *
+ * <p>Entries are invalidated when the safari reports the player as needing an update, or once they are too old. Blobs
+ * no entry uses any more are dropped on save.</p>
+ */
+public final class PlayerDiskCache {
+	private static final int MAGIC = 0x434F5343; // COSC
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+
+	private static final int MAX_ENTRIES = Integer.parseInt(System.getProperty("cosmetica.diskCacheSize", "4096"));
+	private static final long MAX_AGE_MS = 1000L * 60 * 60 * Long.parseLong(System.getProperty("cosmetica.diskCacheHours", "72"));
+	private static final long SHUTDOWN_SAVE_TIMEOUT_MS = Long.parseLong(System.getProperty("cosmetica.diskCacheSaveTimeoutMs", "2000"));
+
+	private static final Map<UUID, Entry> index = new ConcurrentHashMap<>();
+	private static final Map<String, Blob> blobs = new ConcurrentHashMap<>();
+	private static final Object fileLock = new Object();
+	/**
+	 * Held while storing an entry with its blobs, and while a save decides which blobs are still used, so a blob isn't
+	 * dropped between being stored and the entry using it being added.
+	 */
+	private static final Object storeLock = new Object();
+	private static volatile long timestamp = 0;
+	private static volatile boolean dirty = false;
+	@Nullable
+	private static Path file;
+
+	/**
+	 * Load the index of the cache at the given location.
+	 */
+	public static void load(Path location) {
+		synchronized (fileLock) {
+			file = location;
+			index.clear();
+			blobs.clear();
+
+			if (!Files.isRegularFile(location)) return;
+
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(location)))) {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					DebugMode.log("Discarding player data disk cache with an unknown format.");
+					return;
+				}
+
+				timestamp = in.readLong();
+				int count = in.readInt();
+				int blobCount = in.readInt();
+				long offset = HEADER_SIZE + in.readInt();
+				long now = System.currentTimeMillis();
+
+				for (int i = 0; i < count; i++) {
+					UUID uuid = new UUID(in.readLong(), in.readLong());
+					long savedAt = in.readLong();
+					int length = in.readInt();
+					String[] uses = readKeys(in);
+
+					if (now - savedAt < MAX_AGE_MS) {
+						index.put(uuid, new Entry(offset, length, savedAt, uses, null));
+					}
+
+					offset += length;
+				}
+
+				for (int i = 0; i < blobCount; i++) {
+					String key = in.readUTF();
+					int length = in.readInt();
+					blobs.put(key, new Blob(offset, length, null));
+					offset += length;
+				}
+
+				DebugMode.log("Loaded player data disk cache index with {} entries and {} blobs.", index.size(), blobs.size());
+			} catch (IOException e) {
+				Cosmetica.LOGGER.warn("Failed to load player data disk cache", e);
+				index.clear();
+				blobs.clear();
+			}
+		}
+	}
+
+	/**
+	 * Check whether user info for the given player is cached on disk.
+	 */
+	public static boolean contains(UUID uuid) {
+		Entry entry = index.get(uuid);
+		return entry != null && System.currentTimeMillis() - entry.savedAt() < MAX_AGE_MS;
+	}
+
+	/**
+	 * Read the cached user info for the given player.
+	 * @return the cached user info, or null if there is none or it could not be read.
+	 */
+	@Nullable
+	public static CachedUserInfo read(UUID uuid) {
+		Entry entry = index.get(uuid);
+		if (entry == null) return null;
+
+		try {
+			byte[] data = entry.unsaved();
+
+			if (data == null) {
+				synchronized (fileLock) {
+					// the entry may have been moved by a save while we were waiting
+					entry = index.get(uuid);
+					if (entry == null || file == null) return null;
+					data = entry.unsaved() == null ? readFile(entry.offset(), entry.length()) : entry.unsaved();
+				}
+			}
+
+			try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+				return CachedUserInfo.read(in, PlayerDiskCache::readBlob);
+			}
+		} catch (IOException | RuntimeException e) {
+			DebugMode.logError("Failed to read cached user info for " + uuid, e);
+			index.remove(uuid, entry);
+			return null;
+		}
+	}
+
+	private static String readBlob(String key) throws IOException {
+		Blob blob = blobs.get(key);
+		byte[] data = blob == null ? null : blob.unsaved();
+
+		if (data == null) {
+			synchronized (fileLock) {
+				// the blob may have been moved by a save while we were waiting
+				blob = blobs.get(key);
+				if (blob == null || file == null) throw new IOException("Missing blob " + key);
+				data = blob.unsaved() == null ? readFile(blob.offset(), blob.length()) : blob.unsaved();
+			}
+		}
+
+		try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Read part of the cache file. Should be called holding the file lock.
+	 */
+	private static byte[] readFile(long offset, int length) throws IOException {
+		byte[] data = new byte[length];
+
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+			raf.seek(offset);
+			raf.readFully(data);
+		}
+
+		return data;
+	}
+
+	public static void store(UUID uuid, CachedUserInfo info) {
+		if (file == null) return;
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			Set<String> uses = new HashSet<>();
+
+			synchronized (storeLock) {
+				try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+					info.write(out, blob -> {
+						String key = storeBlob(blob);
+						uses.add(key);
+						return key;
+					});
+				}
+
+				byte[] data = bytes.toByteArray();
+				index.put(uuid, new Entry(-1, data.length, System.currentTimeMillis(), uses.toArray(String[]::new), data));
+			}
+
+			dirty = true;
+		} catch (IOException | RuntimeException e) {
+			DebugMode.logError("Failed to serialise user info for " + uuid, e);
+		}
+	}
+
+	/**
+	 * Store the given blob, unless it is already stored. Should be called holding the store lock.
+	 * @return the key to read the blob back with.
+	 */
+	private static String storeBlob(String blob) throws IOException {
+		byte[] content = blob.getBytes(StandardCharsets.UTF_8);
+		String key = Base64.encodeBase64String(SHA1.get().digest(content));
+
+		if (!blobs.containsKey(key)) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+			try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+				out.write(content);
+			}
+
+			byte[] data = bytes.toByteArray();
+			blobs.put(key, new Blob(-1, data.length, data));
+		}
+
+		return key;
+	}
+
+	public static void invalidate(UUID uuid) {
+		if (index.remove(uuid) != null) {
+			DebugMode.log("Invalidated cached user info for {}", uuid);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Invalidate every entry, for example because the user's settings have changed what info they are sent.
+	 */
+	public static void clear() {
+		if (!index.isEmpty()) {
+			index.clear();
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Get the safari timestamp as of the last time the cache was updated.
+	 * @return the timestamp, or 0 if the cache is empty.
+	 */
+	public static long getTimestamp() {
+		return index.isEmpty() ? 0 : timestamp;
+	}
+
+	public static void setTimestamp(long timestamp) {
+		PlayerDiskCache.timestamp = timestamp;
+		dirty = true;
+	}
+
+	/**
+	 * Write the cache to disk on an IO thread, waiting at most {@code cosmetica.diskCacheSaveTimeoutMs} for it to finish,
+	 * so a slow disk can't hold up closing the game. The cache is written to a temporary file first, so a save cut short
+	 * leaves the previous file intact.
+	 */
+	public static void saveOnShutdown() {
+		try {
+			CompletableFuture.runAsync(PlayerDiskCache::save, Util.ioPool()).get(SHUTDOWN_SAVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			Cosmetica.LOGGER.warn("Player data disk cache took longer than {}ms to save. Not waiting for it.", SHUTDOWN_SAVE_TIMEOUT_MS);
+		} catch (InterruptedException | ExecutionException e) {
+			Cosmetica.LOGGER.warn("Failed to save player data disk cache", e);
+		}
+	}
+
+	/**
+	 * Write the cache to disk, keeping only the most recently saved entries if there are too many, and the blobs they use.
+	 */
+	public static void save() {
+		synchronized (fileLock) {
+			if (!dirty || file == null) return;
+			// cleared before taking the snapshot, so anything stored while saving is saved next time. Set again if this save fails
+			dirty = false;
+
+			long now = System.currentTimeMillis();
+			List<Map.Entry<UUID, Entry>> entries;
+			List<Map.Entry<String, Blob>> used = new ArrayList<>();
+
+			synchronized (storeLock) {
+				entries = new ArrayList<>(index.entrySet());
+				entries.sort(Comparator.comparingLong((Map.Entry<UUID, Entry> e) -> e.getValue().savedAt()).reversed());
+
+				// drop entries that are too old, or beyond the maximum number of entries
+				for (int i = entries.size() - 1; i >= 0; i--) {
+					Map.Entry<UUID, Entry> e = entries.get(i);
+
+					if (i >= MAX_ENTRIES || now - e.getValue().savedAt() >= MAX_AGE_MS) {
+						index.remove(e.getKey(), e.getValue());
+						entries.remove(i);
+					}
+				}
+
+				// then the blobs no remaining entry uses
+				Set<String> uses = new HashSet<>();
+
+				for (Entry entry : index.values()) {
+					Collections.addAll(uses, entry.uses());
+				}
+
+				blobs.keySet().retainAll(uses);
+
+				for (Map.Entry<UUID, Entry> e : entries) {
+					for (String key : e.getValue().uses()) {
+						Blob blob = blobs.get(key);
+						if (blob != null && uses.remove(key)) used.add(Map.entry(key, blob));
+					}
+				}
+			}
+
+			Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+			long offset;
+
+			try (FileChannel previous = Files.isRegularFile(file) ? FileChannel.open(file, StandardOpenOption.READ) : null;
+				 FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+				DataOutputStream indexOut = new DataOutputStream(indexBytes);
+
+				for (Map.Entry<UUID, Entry> e : entries) {
+					indexOut.writeLong(e.getKey().getMostSignificantBits());
+					indexOut.writeLong(e.getKey().getLeastSignificantBits());
+					indexOut.writeLong(e.getValue().savedAt());
+					indexOut.writeInt(e.getValue().length());
+					writeKeys(indexOut, e.getValue().uses());
+				}
+
+				for (Map.Entry<String, Blob> e : used) {
+					indexOut.writeUTF(e.getKey());
+					indexOut.writeInt(e.getValue().length());
+				}
+
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(timestamp);
+				out.writeInt(entries.size());
+				out.writeInt(used.size());
+				out.writeInt(indexBytes.size());
+				indexBytes.writeTo(out);
+
+				for (Map.Entry<UUID, Entry> e : entries) {
+					copy(e.getValue().offset(), e.getValue().length(), e.getValue().unsaved(), previous, out, channel);
+				}
+
+				for (Map.Entry<String, Blob> e : used) {
+					copy(e.getValue().offset(), e.getValue().length(), e.getValue().unsaved(), previous, out, channel);
+				}
+
+				out.flush();
+				offset = HEADER_SIZE + indexBytes.size();
+			} catch (IOException e) {
+				Cosmetica.LOGGER.warn("Failed to save player data disk cache", e);
+				dirty = true;
+				return;
+			}
+
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				Cosmetica.LOGGER.warn("Failed to replace player data disk cache", e);
+				dirty = true;
+				return;
+			}
+
+			// entries and blobs are now all in the file, at new offsets. Anything stored or invalidated since the snapshot
+			// is left alone
+			for (Map.Entry<UUID, Entry> e : entries) {
+				Entry entry = e.getValue();
+				index.replace(e.getKey(), entry, new Entry(offset, entry.length(), entry.savedAt(), entry.uses(), null));
+				offset += entry.length();
+			}
+
+			for (Map.Entry<String, Blob> e : used) {
+				blobs.replace(e.getKey(), e.getValue(), new Blob(offset, e.getValue().length(), null));
+				offset += e.getValue().length();
+			}
+
+			DebugMode.log("Saved player data disk cache with {} entries and {} blobs.", entries.size(), used.size());
+		}
+	}
+
+	/**
+	 * Write an entry or blob to the new file, either from memory if it is unsaved or from the previous file.
+	 */
+	private static void copy(long offset, int length, byte @Nullable [] unsaved, @Nullable FileChannel previous, DataOutputStream out, FileChannel channel) throws IOException {
+		if (unsaved != null) {
+			out.write(unsaved);
+		} else if (previous != null) {
+			out.flush();
+
+			// transferTo may copy fewer bytes than asked
+			for (long copied = 0; copied < length; ) {
+				long transferred = previous.transferTo(offset + copied, length - copied, channel);
+				if (transferred <= 0) throw new EOFException("Player data disk cache ended " + (length - copied) + " bytes early at " + (offset + copied));
+				copied += transferred;
+			}
+		}
+	}
+
+	private static void writeKeys(DataOutput out, String[] keys) throws IOException {
+		out.writeShort(keys.length);
+
+		for (String key : keys) {
+			out.writeUTF(key);
+		}
+	}
+
+	private static String[] readKeys(DataInput in) throws IOException {
+		String[] keys = new String[in.readUnsignedShort()];
+
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = in.readUTF();
+		}
+
+		return keys;
+	}
+
+	/**
+	 * MessageDigest isn't thread safe, and entries are stored from many lookup threads at once.
+	 */
+	private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 Hashing not supported by the current Java Configuration.", e);
+		}
+	});
+
+	/**
+	 * An entry in the cache.
+	 * @param offset the offset of the entry in the file. Meaningless if unsaved.
+	 * @param length the length of the deflated entry.
+	 * @param savedAt the time the user info was retrieved.
+	 * @param uses the keys of the blobs the entry uses.
+	 * @param unsaved the deflated entry, if it has not been written to the file yet.
+	 */
+	private record Entry(long offset, int length, long savedAt, String[] uses, byte @Nullable [] unsaved) {
+	}
+
+	/**
+	 * A texture or model json in the cache.
+	 * @param offset the offset of the blob in the file. Meaningless if unsaved.
+	 * @param length the length of the deflated blob.
+	 * @param unsaved the deflated blob, if it has not been written to the file yet.
+	 */
+	private record Blob(long offset, int length, byte @Nullable [] unsaved) {
+	}
+}
@@ -28,6 +28,7 @@ import cc.cosmetica.cosmetica.screens.fakeplayer.MenuRenderLayer;
 import cc.cosmetica.cosmetica.screens.fakeplayer.Playerish;
 import cc.cosmetica.cosmetica.utils.collections.HashMapBackedLazyMap;
 import cc.cosmetica.cosmetica.utils.collections.LazyMap;
+import cc.cosmetica.cosmetica.utils.SavedPose;
 import cc.cosmetica.cosmetica.utils.TextComponents;
 import com.mojang.blaze3d.vertex.PoseStack;
 import net.minecraft.client.model.PlayerModel;
@@ -58,8 +59,8 @@ public class ShoulderBuddies<T extends AbstractClientPlayer> extends CustomLayer
 
 		PlayerData playerData = PlayerData.get(player);
 
-		BakableModel left = canOverridePlayerCosmetics ? LEFT_OVERRIDDEN.get(playerData::leftShoulderBuddy) : playerData.leftShoulderBuddy();
-		BakableModel right = canOverridePlayerCosmetics ? RIGHT_OVERRIDDEN.get(playerData::rightShoulderBuddy) : playerData.rightShoulderBuddy();
+		BakableModel left = canOverridePlayerCosmetics ? LEFT_OVERRIDDEN.get(playerData, PlayerData::leftShoulderBuddy) : playerData.leftShoulderBuddy();
+		BakableModel right = canOverridePlayerCosmetics ? RIGHT_OVERRIDDEN.get(playerData, PlayerData::rightShoulderBuddy) : playerData.rightShoulderBuddy();
 
 		if (left != null && ((left.extraInfo() & Model.SHOW_SHOULDER_BUDDY_WITH_PARROT) != 0 || player.getShoulderEntityLeft().isEmpty())) render(left, stack, multiBufferSource, packedLight, (Playerish) player, true);
 		if (right != null && ((right.extraInfo() & Model.SHOW_SHOULDER_BUDDY_WITH_PARROT) != 0 || player.getShoulderEntityRight().isEmpty())) render(right, stack, multiBufferSource, packedLight, (Playerish) player, false);
@@ -67,15 +68,15 @@ public class ShoulderBuddies<T extends AbstractClientPlayer> extends CustomLayer
 
 	@Override
 	public void render(PoseStack stack, MultiBufferSource bufferSource, int packedLight, FakePlayer player, float o, float n, float delta, float bob, float yRotDiff, float xRot) {
-		BakableModel left = LEFT_OVERRIDDEN.get(() -> player.getData().leftShoulderBuddy());
-		BakableModel right = RIGHT_OVERRIDDEN.get(() -> player.getData().rightShoulderBuddy());
+		BakableModel left = LEFT_OVERRIDDEN.get(player, p -> p.getData().leftShoulderBuddy());
+		BakableModel right = RIGHT_OVERRIDDEN.get(player, p -> p.getData().rightShoulderBuddy());
 
 		if (left != null) render(left, stack, bufferSource, packedLight, player, true);
 		if (right != null) render(right, stack, bufferSource, packedLight, player, false);
 	}
 
 	public void render(BakableModel modelData, PoseStack stack, MultiBufferSource multiBufferSource, int packedLightProbably, Playerish player, boolean left) {
-		stack.pushPose();
+		SAVED_POSE.save(stack);
 
 		if (this.builtInModels.containsKey(modelData.id())) { // builtin live sheep
 			this.builtInModels.get(modelData.id()).render(stack, multiBufferSource, player, left, packedLightProbably);
@@ -93,9 +94,10 @@ public class ShoulderBuddies<T extends AbstractClientPlayer> extends CustomLayer
 			}
 		}
 
-		stack.popPose();
+		SAVED_POSE.restore(stack);
 	}
 
+	private static final SavedPose SAVED_POSE = new SavedPose();
 	public static final CosmeticStack<BakableModel> LEFT_OVERRIDDEN = new CosmeticStack();
 	public static final CosmeticStack<BakableModel> RIGHT_OVERRIDDEN = new CosmeticStack();
 	public static OptionalInt staticOverride = OptionalInt.empty();
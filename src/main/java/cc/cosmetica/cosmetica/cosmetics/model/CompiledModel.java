@@ -0,0 +1,164 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cc.cosmetica.cosmetica.cosmetics.model;
+
+import cc.cosmetica.cosmetica.utils.PoseTransform;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import com.mojang.math.Matrix3f;
+import com.mojang.math.Matrix4f;
+import com.mojang.math.Vector3f;
+import com.mojang.math.Vector4f;
+import net.minecraft.client.renderer.block.model.BakedQuad;
+import net.minecraft.client.renderer.block.model.ItemTransforms;
+import net.minecraft.client.resources.model.BakedModel;
+import net.minecraft.core.Direction;
+import net.minecraft.core.Vec3i;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A baked model with its quads laid out in flat arrays, so drawing it is a single transform-and-copy, rather than
+ * gathering each face's quads and unpacking each quad's vertex data every frame.
+ */
+public final class CompiledModel {
+	private CompiledModel(BakedModel baked, PoseTransform transform, float[] vertices, float[] normals) {
+		this.baked = baked;
+		this.transform = transform;
+		this.vertices = vertices;
+		this.normals = normals;
+	}
+
+	private static final int VERTEX_SIZE = DefaultVertexFormat.BLOCK.getIntegerSize();
+	/**
+	 * Floats stored per vertex: x, y, z, u, v.
+	 */
+	private static final int STRIDE = 5;
+
+	// scratch space for transforming. Only used on the render thread
+	private static final Vector4f POSITION = new Vector4f();
+	private static final Vector3f NORMAL = new Vector3f();
+
+	private final BakedModel baked;
+	/**
+	 * The transformation ItemRenderer would apply to the model before drawing it.
+	 */
+	private final PoseTransform transform;
+	private final float[] vertices;
+	/**
+	 * The untransformed normal of each quad.
+	 */
+	private final float[] normals;
+
+	public BakedModel getBakedModel() {
+		return this.baked;
+	}
+
+	public PoseTransform getTransform() {
+		return this.transform;
+	}
+
+	public int getQuadCount() {
+		return this.normals.length / 3;
+	}
+
+	/**
+	 * Draw the model, the same as {@link VertexConsumer#putBulkData} would for each of its quads, untinted.
+	 */
+	public void render(PoseStack.Pose pose, VertexConsumer consumer, int packedLight, int overlay) {
+		this.render(pose.pose(), pose.normal(), consumer, packedLight, overlay, 0, 0, 1, 1);
+	}
+
+	/**
+	 * Draw the model with the given position and normal matrices, mapping its texture coordinates in [0, 1] to
+	 * [u0, u1] and [v0, v1].
+	 */
+	public void render(Matrix4f pose, Matrix3f normal, VertexConsumer consumer, int packedLight, int overlay, float u0, float v0, float u1, float v1) {
+		float uScale = u1 - u0;
+		float vScale = v1 - v0;
+
+		for (int quad = 0, vertex = 0; quad < this.normals.length; quad += 3) {
+			NORMAL.set(this.normals[quad], this.normals[quad + 1], this.normals[quad + 2]);
+			NORMAL.transform(normal);
+
+			for (int end = vertex + 4 * STRIDE; vertex < end; vertex += STRIDE) {
+				POSITION.set(this.vertices[vertex], this.vertices[vertex + 1], this.vertices[vertex + 2], 1.0F);
+				POSITION.transform(pose);
+
+				consumer.vertex(
+						POSITION.x(), POSITION.y(), POSITION.z(),
+						1.0F, 1.0F, 1.0F, 1.0F,
+						u0 + this.vertices[vertex + 3] * uScale, v0 + this.vertices[vertex + 4] * vScale,
+						overlay, packedLight,
+						NORMAL.x(), NORMAL.y(), NORMAL.z());
+			}
+		}
+	}
+
+	/**
+	 * Lay out the quads of the given model in the order they'd be drawn by {@link Models#renderModelLists}. Can be called
+	 * on any thread.
+	 */
+	public static CompiledModel compile(BakedModel model) {
+		List<BakedQuad> quads = new ArrayList<>();
+		Random random = new Random();
+
+		for (Direction direction : Direction.values()) {
+			random.setSeed(42L);
+			quads.addAll(model.getQuads(null, direction, random));
+		}
+
+		random.setSeed(42L);
+		quads.addAll(model.getQuads(null, null, random));
+
+		float[] vertices = new float[quads.size() * 4 * STRIDE];
+		float[] normals = new float[quads.size() * 3];
+		int v = 0;
+		int n = 0;
+
+		for (BakedQuad quad : quads) {
+			int[] data = quad.getVertices();
+
+			for (int i = 0; i < 4; i++) {
+				int offset = i * VERTEX_SIZE;
+				vertices[v++] = Float.intBitsToFloat(data[offset]);
+				vertices[v++] = Float.intBitsToFloat(data[offset + 1]);
+				vertices[v++] = Float.intBitsToFloat(data[offset + 2]);
+				vertices[v++] = Float.intBitsToFloat(data[offset + 4]);
+				vertices[v++] = Float.intBitsToFloat(data[offset + 5]);
+			}
+
+			Vec3i normal = quad.getDirection().getNormal();
+			normals[n++] = normal.getX();
+			normals[n++] = normal.getY();
+			normals[n++] = normal.getZ();
+		}
+
+		PoseTransform transform = PoseTransform.of(stack -> {
+			ItemTransforms transforms = model.getTransforms();
+			stack.translate(0.0D, 0.25F * transforms.getTransform(ItemTransforms.TransformType.GROUND).scale.y(), 0.0D);
+			transforms.getTransform(ItemTransforms.TransformType.FIXED).apply(false, stack);
+			stack.translate(-0.5D, -0.5D, -0.5D);
+		});
+
+		return new CompiledModel(model, transform, vertices, normals);
+	}
+}
@@ -23,11 +23,17 @@ import net.minecraft.resources.ResourceLocation;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public final class CosmeticStack<T> {
 	private Stacc<T> testModels = new ArrayStacc<>();
+	/**
+	 * The top test model as a list, kept so it isn't wrapped again every time it's drawn.
+	 */
+	private List<T> peekList = List.of();
 	private int index = -1;
 	private boolean removeModel = false;
 
@@ -40,14 +46,30 @@ public final class CosmeticStack<T> {
 
 	@Nullable
 	public T get(Supplier<T> orElse) {
+		return this.get(orElse, Supplier::get);
+	}
+
+	/**
+	 * Get the top test model, or else the result of the given function applied to the given context. Unlike a lambda
+	 * capturing the context, a non-capturing function doesn't need allocating on each call, so use this when rendering.
+	 */
+	@Nullable
+	public <C> T get(C context, Function<C, T> orElse) {
 		if (solo != null && solo != this) return null;
-		return this.testModels.isEmpty() ? orElse.get() : this.peek();
+		return this.testModels.isEmpty() ? orElse.apply(context) : this.peek();
 	}
 
 	public List<T> getList(Supplier<List<T>> orElse) {
-		if (solo != null && solo != this) return new ArrayList<>();
-		if (this.index > -1) return this.getVerySpecialListSpecificallyForHatsOnTheApplyCosmeticsScreen(orElse.get(), this.index);
-		return this.testModels.isEmpty() ? orElse.get() : this.lPeek();
+		return this.getList(orElse, Supplier::get);
+	}
+
+	/**
+	 * List equivalent of {@link CosmeticStack#get(Object, Function)}.
+	 */
+	public <C> List<T> getList(C context, Function<C, List<T>> orElse) {
+		if (solo != null && solo != this) return List.of();
+		if (this.index > -1) return this.getVerySpecialListSpecificallyForHatsOnTheApplyCosmeticsScreen(orElse.apply(context), this.index);
+		return this.testModels.isEmpty() ? orElse.apply(context) : this.lPeek();
 	}
 
 	public void solo() {
@@ -67,7 +89,7 @@ public final class CosmeticStack<T> {
 	}
 
 	private List<T> getVerySpecialListSpecificallyForHatsOnTheApplyCosmeticsScreen(List<T> existingHats, int replaceThisOne) {
-		if (solo != null && solo != this) return new ArrayList<>();
+		if (solo != null && solo != this) return List.of();
 
 		// if no test models just use existing hats
 		if (this.testModels.isEmpty()) return existingHats;
@@ -93,6 +115,7 @@ public final class CosmeticStack<T> {
 	public void push(T model) {
 		this.testModels.push(model);
 		this.removeModel = model == NO_RESOURCE_LOCATION || model == NO_BAKABLE_MODEL;
+		this.peekList = Collections.singletonList(model);
 	}
 
 	private T peek() {
@@ -102,17 +125,19 @@ public final class CosmeticStack<T> {
 
 	private List<T> lPeek() {
 		if (this.removeModel) return List.of();
-		return List.of(this.testModels.peek());
+		return this.peekList;
 	}
 
 	public void clear() {
 		this.testModels.clear();
 		this.removeModel = false;
+		this.peekList = List.of();
 	}
 
 	public void pop() {
 		this.testModels.pop();
 		this.removeModel = !this.testModels.isEmpty() && (this.testModels.peek() == NO_RESOURCE_LOCATION || this.testModels.peek() == NO_BAKABLE_MODEL);
+		this.peekList = this.testModels.isEmpty() ? List.of() : Collections.singletonList(this.testModels.peek());
 	}
 
 	public static final ResourceLocation NO_RESOURCE_LOCATION = new ResourceLocation("cosmetica", "none");
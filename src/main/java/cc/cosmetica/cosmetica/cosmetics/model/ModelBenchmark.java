@@ -0,0 +1,312 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cc.cosmetica.cosmetica.cosmetics.model;
+
+import cc.cosmetica.cosmetica.Cosmetica;
+import cc.cosmetica.cosmetica.cosmetics.CustomLayer;
+import cc.cosmetica.cosmetica.mixin.LivingEntityRendererAccessor;
+import cc.cosmetica.cosmetica.utils.SavedPose;
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.model.PlayerModel;
+import net.minecraft.client.player.AbstractClientPlayer;
+import net.minecraft.client.renderer.LightTexture;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.entity.EntityRenderDispatcher;
+import net.minecraft.client.renderer.entity.layers.RenderLayer;
+import net.minecraft.client.renderer.entity.player.PlayerRenderer;
+import net.minecraft.client.renderer.texture.OverlayTexture;
+import net.minecraft.resources.ResourceLocation;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times drawing each baked model {@value PLAYERS} times, as if that many players wearing it were in view, both through
+ * {@link CompiledModel} and through the per-quad path it replaced. Vertices go to a consumer which discards them, so only
+ * the cost of producing them is measured. Also measures how much drawing cosmetics allocates. Should be called on the
+ * render thread.
+ *
+ * <p>These are debug commands for looking into performance by hand, not tests: the repository has no test suite, and
+ * drawing needs a running client with players in view.</p>
+ */
+public final class ModelBenchmark {
+	private static final int PLAYERS = 100;
+	private static final int ROUNDS = 20;
+	/**
+	 * Written with the vertex checksum after each run, so the work being timed can't be optimised out.
+	 */
+	@SuppressWarnings("unused")
+	private static float checksum;
+
+	public static String run() {
+		List<CompiledModel> models = new ArrayList<>(Models.getBakedModels());
+		if (models.isEmpty()) return "No baked models to benchmark. Look at some players wearing cosmetics first.";
+
+		DiscardingVertexConsumer sink = new DiscardingVertexConsumer();
+		PoseStack stack = new PoseStack();
+		int quads = 0;
+
+		for (CompiledModel model : models) {
+			quads += model.getQuadCount();
+		}
+
+		// the first rounds warm up the JIT
+		long perQuad = 0;
+		long compiled = 0;
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+
+			for (CompiledModel model : models) {
+				for (int player = 0; player < PLAYERS; player++) {
+					Models.renderModelLists(model.getBakedModel(), LightTexture.FULL_BRIGHT, OverlayTexture.NO_OVERLAY, stack, sink);
+				}
+			}
+
+			long middle = System.nanoTime();
+
+			for (CompiledModel model : models) {
+				for (int player = 0; player < PLAYERS; player++) {
+					model.render(stack.last(), sink, LightTexture.FULL_BRIGHT, OverlayTexture.NO_OVERLAY);
+				}
+			}
+
+			long end = System.nanoTime();
+
+			if (round >= ROUNDS / 2) {
+				perQuad += middle - start;
+				compiled += end - middle;
+			}
+		}
+
+		int measured = ROUNDS - ROUNDS / 2;
+		checksum = sink.checksum;
+
+		return String.format("%d models (%d quads) x %d players: per-quad %.3f ms, compiled %.3f ms per frame (%.1fx)",
+				models.size(), quads, PLAYERS,
+				perQuad / 1e6 / measured, compiled / 1e6 / measured,
+				compiled == 0 ? 0 : (double) perQuad / compiled);
+	}
+
+	/**
+	 * Draw each baked model {@value PLAYERS} times through {@link Models#renderModel}, as each player wearing it would be,
+	 * and measure how much the render thread allocates doing so. Once warmed up, this should be nothing: anything
+	 * allocated per model per frame becomes garbage at the rate of players in view times frame rate. Logs an error if
+	 * it isn't.
+	 */
+	public static String measureModelAllocations() {
+		List<String> ids = new ArrayList<>(Models.getBakedModelIds());
+		List<CompiledModel> models = new ArrayList<>(ids.size());
+		List<ResourceLocation> textures = new ArrayList<>(ids.size());
+
+		for (String id : ids) {
+			BakableModel unbaked = Models.getLoadedModel(id);
+			CompiledModel model = unbaked == null ? null : Models.getBakedModel(unbaked);
+
+			if (model != null) {
+				models.add(model);
+				textures.add(unbaked.image());
+			}
+		}
+
+		if (models.isEmpty()) return "No baked models to check. Look at some players wearing cosmetics first.";
+
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) || !threads.isThreadAllocatedMemorySupported()) {
+			return "This JVM can't measure allocations by thread.";
+		}
+
+		DiscardingVertexConsumer sink = new DiscardingVertexConsumer();
+		MultiBufferSource buffers = type -> sink;
+		PoseStack stack = new PoseStack();
+		long allocated = 0;
+
+		// the first rounds warm up the JIT, and let escape analysis remove what it can
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = threads.getCurrentThreadAllocatedBytes();
+
+			for (int i = 0; i < models.size(); i++) {
+				CompiledModel model = models.get(i);
+				ResourceLocation texture = textures.get(i);
+
+				for (int player = 0; player < PLAYERS; player++) {
+					Models.renderModel(model, stack, buffers, texture, LightTexture.FULL_BRIGHT);
+				}
+			}
+
+			long end = threads.getCurrentThreadAllocatedBytes();
+
+			if (round >= ROUNDS / 2) {
+				allocated += end - start;
+			}
+		}
+
+		int measured = ROUNDS - ROUNDS / 2;
+		int draws = models.size() * PLAYERS * measured;
+		checksum = sink.checksum;
+
+		if (allocated > 0) {
+			Cosmetica.LOGGER.error("Drawing cosmetic models allocated {} bytes over {} draws", allocated, draws);
+			return String.format("Models: %d models x %d players allocated %d bytes per frame (%.1f bytes per draw). Should be none.",
+					models.size(), PLAYERS, allocated / measured, (double) allocated / draws);
+		}
+
+		return String.format("Models: %d models x %d players allocated nothing", models.size(), PLAYERS);
+	}
+
+	/**
+	 * Draw the cosmetics and lore of every player in the level through the layers and lore renderer, as each frame
+	 * would, and measure how much the render thread allocates doing so. Unlike drawing the models alone this isn't
+	 * expected to be nothing, as the layers position models on the player with vanilla code
+	 * ({@link net.minecraft.client.model.geom.ModelPart#translateAndRotate}) and lore is drawn by vanilla's font
+	 * renderer, both of which allocate. The layer and lore parts are reported separately, so a change to either can be
+	 * compared against the last measurement.
+	 */
+	public static String measureLayerAllocations() {
+		Minecraft minecraft = Minecraft.getInstance();
+		if (minecraft.level == null) return "Not in a world.";
+
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) || !threads.isThreadAllocatedMemorySupported()) {
+			return "This JVM can't measure allocations by thread.";
+		}
+
+		EntityRenderDispatcher dispatcher = minecraft.getEntityRenderDispatcher();
+		List<AbstractClientPlayer> players = new ArrayList<>();
+		List<PlayerRenderer> renderers = new ArrayList<>();
+
+		for (AbstractClientPlayer player : minecraft.level.players()) {
+			if (dispatcher.getRenderer(player) instanceof PlayerRenderer renderer) {
+				players.add(player);
+				renderers.add(renderer);
+			}
+		}
+
+		if (players.isEmpty()) return "No players to draw.";
+
+		DiscardingVertexConsumer sink = new DiscardingVertexConsumer();
+		MultiBufferSource buffers = type -> sink;
+		PoseStack stack = new PoseStack();
+		SavedPose identity = new SavedPose();
+		identity.save(stack);
+		long layers = 0;
+		long lore = 0;
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = threads.getCurrentThreadAllocatedBytes();
+
+			for (int i = 0; i < players.size(); i++) {
+				drawLayers(renderers.get(i), players.get(i), stack, buffers);
+				identity.restore(stack);
+			}
+
+			long middle = threads.getCurrentThreadAllocatedBytes();
+
+			for (int i = 0; i < players.size(); i++) {
+				Cosmetica.renderLore(dispatcher, players.get(i), renderers.get(i).getModel(), stack, buffers, minecraft.font, LightTexture.FULL_BRIGHT);
+				identity.restore(stack);
+			}
+
+			long end = threads.getCurrentThreadAllocatedBytes();
+
+			if (round >= ROUNDS / 2) {
+				layers += middle - start;
+				lore += end - middle;
+			}
+		}
+
+		int measured = ROUNDS - ROUNDS / 2;
+		checksum = sink.checksum;
+
+		return String.format("Layers: %d players allocated %d bytes per frame (%.1f per player). Lore: %d bytes per frame (%.1f per player). Includes vanilla model part positioning and font rendering.",
+				players.size(),
+				layers / measured, (double) layers / measured / players.size(),
+				lore / measured, (double) lore / measured / players.size());
+	}
+
+	/**
+	 * Draw the given player's cosmetics through the mod's layers on their renderer.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void drawLayers(PlayerRenderer renderer, AbstractClientPlayer player, PoseStack stack, MultiBufferSource buffers) {
+		List<RenderLayer<?, ?>> layers = ((LivingEntityRendererAccessor) renderer).getLayers();
+
+		for (int i = 0; i < layers.size(); i++) {
+			if (layers.get(i) instanceof CustomLayer<?, ?> layer) {
+				((RenderLayer<AbstractClientPlayer, PlayerModel<AbstractClientPlayer>>) layer).render(stack, buffers, LightTexture.FULL_BRIGHT, player, 0, 0, 0, 0, 0, 0);
+			}
+		}
+	}
+
+	/**
+	 * Throws vertices away, keeping a checksum of them.
+	 */
+	private static final class DiscardingVertexConsumer implements VertexConsumer {
+		private float checksum;
+
+		@Override
+		public VertexConsumer vertex(double x, double y, double z) {
+			this.checksum += x;
+			return this;
+		}
+
+		@Override
+		public VertexConsumer color(int r, int g, int b, int a) {
+			return this;
+		}
+
+		@Override
+		public VertexConsumer uv(float u, float v) {
+			this.checksum += u;
+			return this;
+		}
+
+		@Override
+		public VertexConsumer overlayCoords(int u, int v) {
+			return this;
+		}
+
+		@Override
+		public VertexConsumer uv2(int u, int v) {
+			return this;
+		}
+
+		@Override
+		public VertexConsumer normal(float x, float y, float z) {
+			return this;
+		}
+
+		@Override
+		public void endVertex() {
+		}
+
+		@Override
+		public void vertex(float x, float y, float z, float r, float g, float b, float a, float u, float v, int overlay, int light, float nx, float ny, float nz) {
+			this.checksum += x + u + nx;
+		}
+
+		@Override
+		public void defaultColor(int r, int g, int b, int a) {
+		}
+
+		@Override
+		public void unsetDefaultColor() {
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cc.cosmetica.cosmetica.cosmetics.model;
+
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import com.mojang.math.Matrix3f;
+import com.mojang.math.Matrix4f;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.texture.OverlayTexture;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects every copy of each cosmetic model drawn while the level's entities are rendered, with the matrices and light
+ * of each copy, and draws all copies of a model together once the entities are done. Each model then selects its
+ * frame and fetches its buffer once per frame rather than once per player, and every copy lands in the same batch, so
+ * models sharing the {@link cc.cosmetica.cosmetica.utils.textures.ModelAtlas} are drawn in one call.<br>
+ * Outside the level's entity pass, such as players drawn in menus, and with {@code -Dcosmetica.instancing=false},
+ * models are drawn immediately instead, as are copies not drawn to the level's main buffers. Copies drawn to the
+ * outline buffers of glowing players take the outline colour set when they are drawn, so can't be deferred. Should only
+ * be used on the render thread.
+ */
+public final class ModelInstances {
+	private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("cosmetica.instancing", "true"));
+
+	private static final Map<CompiledModel, Batch> batches = new IdentityHashMap<>();
+	/**
+	 * The values of {@link ModelInstances#batches}, iterated by index so drawing doesn't allocate an iterator.
+	 */
+	private static final List<Batch> batchList = new ArrayList<>();
+	private static final float[] FRAME_UVS = new float[4];
+	private static boolean collecting;
+	/**
+	 * The level's main buffers, which collected models are drawn to.
+	 */
+	private static MultiBufferSource mainBuffers;
+
+	/**
+	 * Start collecting models, as the level's entities are about to be rendered.
+	 */
+	public static void begin() {
+		collecting = ENABLED;
+		mainBuffers = Minecraft.getInstance().renderBuffers().bufferSource();
+	}
+
+	/**
+	 * Collect a copy of the given model to draw with the others once the level's entities are done.
+	 * @return whether the model was collected. If not, it should be drawn now.
+	 */
+	public static boolean add(CompiledModel model, ResourceLocation texture, MultiBufferSource buffers, Matrix4f pose, Matrix3f normal, int packedLight) {
+		if (!collecting || buffers != mainBuffers) return false;
+
+		Batch batch = batches.get(model);
+
+		if (batch == null) {
+			batch = new Batch(model);
+			batches.put(model, batch);
+			batchList.add(batch);
+		}
+
+		if (batch.count == 0) {
+			batch.texture = texture;
+		}
+
+		if (batch.count == batch.instances.size()) {
+			batch.instances.add(new Instance());
+		}
+
+		Instance instance = batch.instances.get(batch.count++);
+		instance.pose.load(pose);
+		instance.normal.load(normal);
+		instance.packedLight = packedLight;
+		return true;
+	}
+
+	/**
+	 * Draw every model collected since {@link ModelInstances#begin()} and stop collecting. Models not drawn this frame
+	 * have their batch dropped.
+	 */
+	public static void flush() {
+		collecting = false;
+		int kept = 0;
+
+		for (int b = 0; b < batchList.size(); b++) {
+			Batch batch = batchList.get(b);
+
+			if (batch.count == 0) {
+				batches.remove(batch.model);
+				continue;
+			}
+
+			VertexConsumer consumer = Models.getBuffer(batch.texture, mainBuffers, FRAME_UVS);
+
+			for (int i = 0; i < batch.count; i++) {
+				Instance instance = batch.instances.get(i);
+				batch.model.render(instance.pose, instance.normal, consumer, instance.packedLight, OverlayTexture.NO_OVERLAY, FRAME_UVS[0], FRAME_UVS[1], FRAME_UVS[2], FRAME_UVS[3]);
+			}
+
+			batch.count = 0;
+			batchList.set(kept++, batch);
+		}
+
+		while (batchList.size() > kept) {
+			batchList.remove(batchList.size() - 1);
+		}
+	}
+
+	/**
+	 * The copies of a model drawn this frame. Instances are kept between frames to be reused.
+	 */
+	private static final class Batch {
+		private Batch(CompiledModel model) {
+			this.model = model;
+		}
+
+		private final CompiledModel model;
+		private final List<Instance> instances = new ArrayList<>();
+		private int count;
+		private ResourceLocation texture;
+	}
+
+	private static final class Instance {
+		private final Matrix4f pose = new Matrix4f();
+		private final Matrix3f normal = new Matrix3f();
+		private int packedLight;
+	}
+}
@@ -18,19 +18,26 @@ package cc.cosmetica.cosmetica.cosmetics.model;
 
 import cc.cosmetica.api.Box;
 import cc.cosmetica.api.Model;
+import cc.cosmetica.cosmetica.Cosmetica;
 import cc.cosmetica.cosmetica.CosmeticaSkinManager;
+import cc.cosmetica.cosmetica.ThreadPool;
+import cc.cosmetica.cosmetica.cosmetics.CachedUserInfo;
 import cc.cosmetica.cosmetica.utils.DebugMode;
-import cc.cosmetica.cosmetica.utils.Scheduler;
 import cc.cosmetica.cosmetica.utils.textures.AnimatedTexture;
+import cc.cosmetica.cosmetica.utils.textures.FrameSheet;
+import cc.cosmetica.cosmetica.utils.textures.ModelAtlas;
 import cc.cosmetica.cosmetica.utils.textures.ModelSprite;
+import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.blaze3d.vertex.VertexConsumer;
+import com.mojang.math.Matrix3f;
+import com.mojang.math.Matrix4f;
+import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.block.model.BakedQuad;
 import net.minecraft.client.renderer.block.model.BlockModel;
-import net.minecraft.client.renderer.block.model.ItemTransforms;
 import net.minecraft.client.renderer.texture.AbstractTexture;
 import net.minecraft.client.renderer.texture.OverlayTexture;
 import net.minecraft.client.resources.model.BakedModel;
@@ -46,18 +53,50 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Models {
-	private static Map<String, BakedModel> BAKED_MODELS = new HashMap<>();
-	private static Set<BakedModel> NEW_BAKED_MODELS = new HashSet<>();
-	private static Map<String, BakableModel> LOADED_MODELS = new HashMap<>();
+	/**
+	 * Baked models, and models being baked on a worker thread. Models which failed to bake aren't tried again. These are
+	 * only written on the render thread, but may be read from any.
+	 */
+	private static volatile Map<String, CompiledModel> BAKED_MODELS = new ConcurrentHashMap<>();
+	private static final Set<String> BAKING = ConcurrentHashMap.newKeySet();
+	private static volatile Set<String> FAILED_MODELS = ConcurrentHashMap.newKeySet();
+	/**
+	 * Models which have been, or are being, loaded. Lookups on different threads needing the same model share one load.
+	 * The future completes with null if the model could not be loaded.
+	 */
+	private static final Map<String, CompletableFuture<BakableModel>> LOADED_MODELS = new ConcurrentHashMap<>();
+	// metrics
+	private static final AtomicLong parses = new AtomicLong();
+	private static final AtomicLong sharedLoads = new AtomicLong();
+	/**
+	 * Reference counts for models used by cached player data. Models are unloaded once their count has been zero for
+	 * {@link CosmeticaSkinManager#UNUSED_GRACE_MS}.
+	 */
+	private static final Map<String, Integer> REFERENCES = new ConcurrentHashMap<>();
+	/**
+	 * Models no longer used by any cached player data, and when they were last used.
+	 */
+	private static final Map<String, Long> UNUSED = new ConcurrentHashMap<>();
+	/**
+	 * The render type for each model texture. Only used on the render thread.
+	 */
+	private static final Map<ResourceLocation, RenderType> RENDER_TYPES = new HashMap<>();
+	// scratch space for drawing models. Only used on the render thread
+	private static final Matrix4f POSE = new Matrix4f();
+	private static final Matrix3f NORMAL = new Matrix3f();
+	private static final float[] FRAME_UVS = new float[4];
 	private static final float RANDOM_NEXT_FLOAT = 0.211f; // generated by random.org. Guaranteed to be random.
 	public static ModelBakery thePieShopDownTheRoad;
 
@@ -65,61 +104,164 @@ public class Models {
 	 * PLEASE DO NOT CALL THIS DIRECTLY (call Cosmetics#clearAllCaches(), or resetTextureBasedCaches() to clear texture related caches)
 	 */
 	public static void resetCaches() {
-		LOADED_MODELS = new HashMap<>();
+		LOADED_MODELS.clear();
+		REFERENCES.clear();
+		UNUSED.clear();
 		resetTextureBasedCaches();
 	}
 
 	public static void resetTextureBasedCaches() {
-		BAKED_MODELS = new HashMap<>();
+		BAKED_MODELS = new ConcurrentHashMap<>();
+		FAILED_MODELS = ConcurrentHashMap.newKeySet();
 	}
 
 	public static Collection<String> getCachedModels() {
 		return LOADED_MODELS.keySet();
 	}
 
+	/**
+	 * Get how far along the model with the given id is.
+	 */
+	public static State getState(String id) {
+		CompletableFuture<BakableModel> load = LOADED_MODELS.get(id);
+
+		if (load == null) return State.UNLOADED;
+		if (!load.isDone()) return State.LOADING;
+		if (load.join() == null) return State.FAILED;
+		if (BAKED_MODELS.containsKey(id)) return State.BAKED;
+		if (BAKING.contains(id)) return State.BAKING;
+		if (FAILED_MODELS.contains(id)) return State.FAILED;
+		return State.LOADED;
+	}
+
+	/**
+	 * Report how many models are in each state, and how many loads were shared with one already in progress.
+	 */
+	public static String getStats() {
+		Map<State, Integer> counts = new EnumMap<>(State.class);
+
+		for (String id : LOADED_MODELS.keySet()) {
+			counts.merge(getState(id), 1, Integer::sum);
+		}
+
+		return "Models: " + counts + ", JSON parses: " + parses.get() + ", loads shared: " + sharedLoads.get();
+	}
+
+	/**
+	 * Get the baked form of the given model, starting to bake and compile it on a worker thread if it hasn't been yet.
+	 * Should be called on the render thread.
+	 * @return the baked model, or null if it isn't ready or can't be baked.
+	 */
 	@Nullable
-	public static BakedModel getBakedModel(BakableModel unbaked) {
+	public static CompiledModel getBakedModel(BakableModel unbaked) {
 		if (unbaked.id().charAt(0) == '-') return null; // help i wrote this at 1:!5am
-		boolean compute = !BAKED_MODELS.containsKey(unbaked.id());
 
-		if (compute) {
-			DebugMode.log("Computing Baked Model: " + unbaked.id());
-			BAKED_MODELS.put(unbaked.id(), null); // searching
+		CompiledModel result = BAKED_MODELS.get(unbaked.id());
+		if (result != null || BAKING.contains(unbaked.id()) || FAILED_MODELS.contains(unbaked.id())) return result;
+
+		final ResourceLocation location = unbaked.image();
+		AbstractTexture modelTexture = Minecraft.getInstance().getTextureManager().getTexture(location, null);
+
+		// the texture hasn't been uploaded yet. Try again next time
+		if (!(modelTexture instanceof AnimatedTexture animatedTexture)) return null;
 
-			final ResourceLocation location = unbaked.image();
-			AbstractTexture modelTexture = Minecraft.getInstance().getTextureManager().getTexture(location, null);
+		DebugMode.log("Computing Baked Model: " + unbaked.id());
+		BAKING.add(unbaked.id());
 
-			if (modelTexture instanceof AnimatedTexture) {
-				ModelSprite sprite = new ModelSprite(location, (AnimatedTexture) modelTexture);
+		final ModelSprite sprite = new ModelSprite(location, animatedTexture);
+		final Map<String, CompiledModel> bakedModels = BAKED_MODELS;
+		final Set<String> failedModels = FAILED_MODELS;
 
-				BakedModel model = unbaked.model().bake(
+		Cosmetica.runOffthread(() -> {
+			CompiledModel model = null;
+
+			try {
+				model = CompiledModel.compile(unbaked.model().bake(
 						thePieShopDownTheRoad,
 						l -> sprite,
 						BlockModelRotation.X0_Y0,
-						location /*this resource location in bake is just used for debugging in the case of errors*/);
-				NEW_BAKED_MODELS.add(model);
-				BAKED_MODELS.put(unbaked.id(), model);
+						location /*this resource location in bake is just used for debugging in the case of errors*/));
+			} catch (RuntimeException e) {
+				Cosmetica.LOGGER.error("Error baking model " + unbaked.id(), e);
+			}
 
-				// hack to prevent texture persistence onto other models. See: Line ~+14.
-				Scheduler.scheduleTask(Scheduler.Location.TEXTURE_TICK, () -> {
-					NEW_BAKED_MODELS.remove(model);
-				});
+			final CompiledModel baked = model;
 
-				return model;
-			}
+			// publish on the render thread, so the model appears in full between frames. If the caches were reset or the
+			// model unloaded in the meantime, it's dropped
+			RenderSystem.recordRenderCall(() -> {
+				BAKING.remove(unbaked.id());
+				CompletableFuture<BakableModel> loaded = LOADED_MODELS.get(unbaked.id());
+
+				if (baked == null) {
+					failedModels.add(unbaked.id());
+				} else if (loaded != null && loaded.getNow(null) == unbaked) {
+					bakedModels.put(unbaked.id(), baked);
+				}
+			});
+		}, ThreadPool.GENERAL_THREADS);
+
+		return null;
+	}
+
+	public static void retain(@Nullable BakableModel model) {
+		if (model != null) {
+			REFERENCES.merge(model.id(), 1, Integer::sum);
+			UNUSED.remove(model.id());
+			CosmeticaSkinManager.retain(model.image());
+		}
+	}
+
+	/**
+	 * Release a reference to the given model and its texture. Should be called on the render thread.
+	 */
+	public static void release(@Nullable BakableModel model) {
+		if (model == null) return;
+
+		final String id = model.id();
+
+		if (REFERENCES.computeIfPresent(id, (k, count) -> count > 1 ? count - 1 : null) == null) {
+			UNUSED.put(id, Util.getMillis());
 		}
 
-		BakedModel result = BAKED_MODELS.get(unbaked.id());
+		CosmeticaSkinManager.release(model.image());
+	}
 
-		if (NEW_BAKED_MODELS.contains(result)) { // Don't render on first tick as a temporary hack to fix texture persistence over to new model.
-			return null;
+	/**
+	 * Unload models which have gone unused for longer than the grace period. Should be called on the render thread.
+	 */
+	public static void unloadUnused() {
+		long now = Util.getMillis();
+
+		for (Map.Entry<String, Long> entry : UNUSED.entrySet()) {
+			String id = entry.getKey();
+
+			if (now - entry.getValue() >= CosmeticaSkinManager.UNUSED_GRACE_MS && !REFERENCES.containsKey(id) && UNUSED.remove(id, entry.getValue())) {
+				if (LOADED_MODELS.remove(id) != null) {
+					removeBakedModel(id);
+				}
+			}
 		}
-		return result;
+	}
+
+	/**
+	 * Forget the render type for the given texture, as it has been unloaded. Should be called on the render thread.
+	 */
+	public static void removeRenderType(ResourceLocation texture) {
+		RENDER_TYPES.remove(texture);
+	}
+
+	/**
+	 * Forget the render types of all textures, as they have been dropped. Should be called on the render thread.
+	 */
+	public static void clearRenderTypes() {
+		RENDER_TYPES.clear();
 	}
 
 	public static void removeBakedModel(String id) {
 		DebugMode.log("Deallocating baked model, {}", id);
 		BAKED_MODELS.remove(id);
+		FAILED_MODELS.remove(id);
 	}
 
 	/**
@@ -128,70 +270,141 @@ public class Models {
 	 */
 	@Nullable
 	public static BakableModel createBakableModel(Model model) {
-		String location = model.getId();
+		if (model.getId().isEmpty()) return null;
+
+		return createBakableModel(CachedUserInfo.CachedModel.of(model));
+	}
+
+	/**
+	 * @returns the existing or created bakable model. Will be null if there is an error creating the model
+	 */
+	@Nullable
+	public static BakableModel createBakableModel(CachedUserInfo.CachedModel model) {
+		String location = model.id();
 
 		if (location.isEmpty()) return null;
 
-		Box bounds = model.getBoundingBox();
+		// about to be used again. Don't unload it in the meantime
+		UNUSED.computeIfPresent(location, (k, lastUsed) -> Util.getMillis());
 
-		if (model.isBuiltin()) {
-			return LOADED_MODELS.computeIfAbsent(location, l -> new BakableModel(location, model.getName(), null, null, 0, bounds));
+		Box bounds = model.bounds();
+
+		if (model.builtin()) {
+			return LOADED_MODELS.computeIfAbsent(location, l -> CompletableFuture.completedFuture(new BakableModel(location, model.name(), null, null, 0, bounds))).join();
 		}
 
-		return LOADED_MODELS.computeIfAbsent(location, l -> {
-			try (InputStream is = new ByteArrayInputStream(model.getModel().getBytes(StandardCharsets.UTF_8))) {
-				BlockModel blockModel = BlockModel.fromStream(new InputStreamReader(is, StandardCharsets.UTF_8));
-				blockModel.name = l;
-				return new BakableModel(location, model.getName(), blockModel, CosmeticaSkinManager.processModel(model), model.flags(), bounds);
-			} catch (IOException e) {
-				e.printStackTrace();
-				return null;
-			} catch (Exception e) {
-				e.printStackTrace();
-				return null;
-			}
-		});
-	}
+		CompletableFuture<BakableModel> load = new CompletableFuture<>();
+		CompletableFuture<BakableModel> existing = LOADED_MODELS.putIfAbsent(location, load);
 
-	public static void renderModel(BakedModel model, PoseStack stack, MultiBufferSource multiBufferSource, ResourceLocation texture, int packedLight) {
-		stack.pushPose();
-		boolean isGUI3D = model.isGui3d();
-		float transformStrength = 0.25F;
-		float rotation = 0.0f;
-		float transform = model.getTransforms().getTransform(ItemTransforms.TransformType.GROUND).scale.y();
-		stack.translate(0.0D, rotation + transformStrength * transform, 0.0D);
-		float xScale = model.getTransforms().ground.scale.x();
-		float yScale = model.getTransforms().ground.scale.y();
-		float zScale = model.getTransforms().ground.scale.z();
+		if (existing != null) {
+			// if another thread is still loading it, wait for it rather than parsing it twice
+			if (!existing.isDone()) sharedLoads.incrementAndGet();
+			return existing.join();
+		}
 
-		stack.pushPose();
+		// parsed outside of any lock, so loads of different models don't hold each other up
+		try (InputStream is = new ByteArrayInputStream(model.model().getBytes(StandardCharsets.UTF_8))) {
+			parses.incrementAndGet();
+			BlockModel blockModel = BlockModel.fromStream(new InputStreamReader(is, StandardCharsets.UTF_8));
+			blockModel.name = location;
+			BakableModel result = new BakableModel(location, model.name(), blockModel, CosmeticaSkinManager.processModel(model), model.flags(), bounds);
+			load.complete(result);
+			return result;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			if (!load.isDone()) {
+				// failed. Let waiting threads know, and allow a later attempt to try again
+				LOADED_MODELS.remove(location, load);
+				load.complete(null);
+			}
+		}
+	}
 
-		final ItemTransforms.TransformType transformType = ItemTransforms.TransformType.FIXED;
-		int overlayTyp = OverlayTexture.NO_OVERLAY;
-		// ItemRenderer#render start
-		stack.pushPose();
+	public static void renderModel(CompiledModel model, PoseStack stack, MultiBufferSource multiBufferSource, ResourceLocation texture, int packedLight) {
+		// ItemRenderer#render, with the model's transformation precomputed. Applied to scratch matrices rather than
+		// pushed onto the stack, as pushing allocates a new pose
+		PoseStack.Pose pose = stack.last();
+		POSE.load(pose.pose());
+		NORMAL.load(pose.normal());
+		model.getTransform().applyTo(POSE, NORMAL);
+
+		// drawn with every other copy of this model once the level's entities are done, if possible
+		if (!ModelInstances.add(model, texture, multiBufferSource, POSE, NORMAL, packedLight)) {
+			VertexConsumer consumer = getBuffer(texture, multiBufferSource, FRAME_UVS);
+			model.render(POSE, NORMAL, consumer, packedLight, OverlayTexture.NO_OVERLAY, FRAME_UVS[0], FRAME_UVS[1], FRAME_UVS[2], FRAME_UVS[3]);
+		}
+	}
 
-		model.getTransforms().getTransform(transformType).apply(false, stack);
-		stack.translate(-0.5D, -0.5D, -0.5D);
+	/**
+	 * How far along a model is. Models are loaded (parsed) when player data using them is created, and baked on a worker
+	 * thread the first time they are drawn.
+	 */
+	public enum State {
+		UNLOADED,
+		LOADING,
+		LOADED,
+		BAKING,
+		BAKED,
+		FAILED
+	}
 
-		RenderType renderType = RenderType.entityTranslucent(texture); // hopefully this is the right one
-		VertexConsumer vertexConsumer4 = multiBufferSource.getBuffer(renderType);
-		renderModelLists(model, packedLight, overlayTyp, stack, vertexConsumer4);
+	/**
+	 * Get the buffer to draw models with the given texture to, and the texture coordinates of the texture's current frame
+	 * within what is bound, as u0, v0, u1, v1.
+	 */
+	static VertexConsumer getBuffer(ResourceLocation texture, MultiBufferSource multiBufferSource, float[] frameUvs) {
+		// models with their texture in the atlas share a render type, so they are drawn in one batch
+		ModelAtlas.Region region = ModelAtlas.get(texture);
+		FrameSheet sheet = FrameSheet.get(texture);
+		int frame = sheet == null ? 0 : sheet.getFrameToRender();
+		int frames = sheet == null ? 1 : sheet.getSheetFrames();
+
+		float u0 = region == null ? 0 : region.u0;
+		float v0 = region == null ? 0 : region.v0;
+		float frameHeight = ((region == null ? 1 : region.v1) - v0) / frames;
+
+		frameUvs[0] = u0;
+		frameUvs[1] = v0 + frame * frameHeight;
+		frameUvs[2] = region == null ? 1 : region.u1;
+		frameUvs[3] = v0 + (frame + 1) * frameHeight;
+
+		// RenderType.entityTranslucent allocates a key on each call to look up its own cache
+		RenderType renderType = RENDER_TYPES.computeIfAbsent(region == null ? texture : ModelAtlas.LOCATION, RenderType::entityTranslucent);
+		return multiBufferSource.getBuffer(renderType);
+	}
 
-		stack.popPose();
-		// ItemRenderer#render end
+	/**
+	 * @return the baked models which are ready to draw.
+	 */
+	public static Collection<CompiledModel> getBakedModels() {
+		return BAKED_MODELS.values();
+	}
 
-		stack.popPose();
-		if (!isGUI3D) {
-			stack.translate(0.0F * xScale, 0.0F * yScale, 0.09375F * zScale);
-		}
+	/**
+	 * @return the ids of the baked models which are ready to draw.
+	 */
+	static Collection<String> getBakedModelIds() {
+		return BAKED_MODELS.keySet();
+	}
 
-		stack.popPose();
+	/**
+	 * Get the model with the given id, if it has finished loading.
+	 */
+	@Nullable
+	static BakableModel getLoadedModel(String id) {
+		CompletableFuture<BakableModel> load = LOADED_MODELS.get(id);
+		return load == null ? null : load.getNow(null);
 	}
 
-	// vanilla code that I don't want to rewrite:
+	// vanilla code that I don't want to rewrite. Models are drawn through CompiledModel, which lays out quads in the same
+	// order. This is kept as the baseline for ModelBenchmark
 
-	private static void renderModelLists(BakedModel bakedModel, int packedLight, int overlayType, PoseStack poseStack, VertexConsumer vertexConsumer) {
+	static void renderModelLists(BakedModel bakedModel, int packedLight, int overlayType, PoseStack poseStack, VertexConsumer vertexConsumer) {
 		Random random = new Random();
 		final long seed = 42L;
 		Direction[] var10 = Direction.values();
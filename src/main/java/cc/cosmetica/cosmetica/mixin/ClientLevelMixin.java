@@ -17,7 +17,10 @@
 package cc.cosmetica.cosmetica.mixin;
 
 import cc.cosmetica.cosmetica.Cosmetica;
+import cc.cosmetica.cosmetica.CosmeticaSkinManager;
 import cc.cosmetica.cosmetica.ThreadPool;
+import cc.cosmetica.cosmetica.cosmetics.PlayerData;
+import cc.cosmetica.cosmetica.cosmetics.model.Models;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.core.Holder;
@@ -46,8 +49,15 @@ public abstract class ClientLevelMixin extends Level {
 
 	@Inject(at = @At("RETURN"), method = "tick")
 	private void onClientTick(BooleanSupplier hasTimeLeft, CallbackInfo info) {
+		if (this.getGameTime() % 20 == 0) {
+			CosmeticaSkinManager.enforceBudget();
+		}
+
 		if (this.getGameTime() % 600 == 0) { // every 30 seconds in africa
 			Cosmetica.runOffthread(() -> Cosmetica.safari(this.minecraft, false, false), ThreadPool.GENERAL_THREADS);
+			PlayerData.evictColdEntries();
+			Models.unloadUnused();
+			CosmeticaSkinManager.unloadUnused();
 		}
 	}
 }
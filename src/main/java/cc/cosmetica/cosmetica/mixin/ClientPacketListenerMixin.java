@@ -16,7 +16,9 @@
 
 package cc.cosmetica.cosmetica.mixin;
 
+import cc.cosmetica.cosmetica.ThreadPool;
 import cc.cosmetica.cosmetica.cosmetics.PlayerData;
+import cc.cosmetica.cosmetica.cosmetics.PlayerDiskCache;
 import cc.cosmetica.cosmetica.utils.DebugMode;
 import cc.cosmetica.cosmetica.Cosmetica;
 import net.minecraft.client.Minecraft;
@@ -41,8 +43,10 @@ public abstract class ClientPacketListenerMixin {
 		if (Minecraft.getInstance().getCurrentServer() != null && !Objects.equals(Minecraft.getInstance().getCurrentServer().ip, Cosmetica.authServer)) address = Minecraft.getInstance().getCurrentServer().ip;
 		if (Cosmetica.currentServerAddressCache.isEmpty() || !Objects.equals(Cosmetica.currentServerAddressCache, address)) {
 			Cosmetica.currentServerAddressCache = address;
+			// textures and models are keyed by content, so they're kept in case we see them again on this server
 			DebugMode.log("Clearing all player data due to login.");
-			Cosmetica.clearAllCaches();
+			PlayerData.clearCaches();
+			Cosmetica.runOffthread(PlayerDiskCache::save, ThreadPool.GENERAL_THREADS);
 			PlayerData.get(this.minecraft.player);
 		}
 	}
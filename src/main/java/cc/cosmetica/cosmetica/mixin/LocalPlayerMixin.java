@@ -16,10 +16,18 @@
 
 package cc.cosmetica.cosmetica.mixin;
 
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
 import cc.cosmetica.cosmetica.Cosmetica;
+import cc.cosmetica.cosmetica.CosmeticaSkinManager;
+import cc.cosmetica.cosmetica.TextureUploads;
+import cc.cosmetica.cosmetica.cosmetics.LookupBackoff;
+import cc.cosmetica.cosmetica.cosmetics.LookupCoalescer;
+import cc.cosmetica.cosmetica.cosmetics.LookupScheduler;
 import cc.cosmetica.cosmetica.cosmetics.PlayerData;
 import cc.cosmetica.cosmetica.cosmetics.ShoulderBuddies;
 import cc.cosmetica.cosmetica.utils.DebugMode;
+import cc.cosmetica.cosmetica.utils.textures.ModelAtlas;
+import cc.cosmetica.cosmetica.cosmetics.model.ModelBenchmark;
 import cc.cosmetica.cosmetica.cosmetics.model.Models;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.player.LocalPlayer;
@@ -47,6 +55,30 @@ public class LocalPlayerMixin {
 					case "modelcache":
 						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(Models.getCachedModels().toString()));
 						break;
+					case "modelstats":
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(Models.getStats()));
+						break;
+					case "modelbench":
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(ModelBenchmark.run()));
+						break;
+					case "alloccheck":
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(ModelBenchmark.measureModelAllocations()));
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(ModelBenchmark.measureLayerAllocations()));
+						break;
+					case "cachestats":
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(PlayerData.getStats()));
+						break;
+					case "texturestats":
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(CosmeticaSkinManager.getStats()));
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(TextureUploads.getStats()));
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(ModelAtlas.getStats()));
+						break;
+					case "lookupstats":
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(LookupCoalescer.getStats()));
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(LookupScheduler.getStats()));
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent(LookupBackoff.getStats()));
+						Minecraft.getInstance().gui.getChat().addMessage(new TextComponent("API circuit breaker: " + ApiCircuitBreaker.getState() + ", retry in " + ApiCircuitBreaker.getRetryIn() + "ms"));
+						break;
 					default:
 						break;
 					}
@@ -20,6 +20,7 @@ import cc.cosmetica.api.User;
 import cc.cosmetica.cosmetica.Authentication;
 import cc.cosmetica.cosmetica.Cosmetica;
 import cc.cosmetica.cosmetica.CosmeticaKeybinds;
+import cc.cosmetica.cosmetica.TextureUploads;
 import cc.cosmetica.cosmetica.cosmetics.PlayerData;
 import cc.cosmetica.cosmetica.screens.*;
 import cc.cosmetica.cosmetica.utils.DebugMode;
@@ -77,12 +78,14 @@ public abstract class MinecraftMixin {
 		}
 	}
 
+	@Inject(at = @At("HEAD"), method = "runTick")
+	private void uploadTextures(boolean tick, CallbackInfo info) {
+		TextureUploads.uploadPending();
+	}
+
 	@Inject(at = @At("HEAD"), method = "setLevel")
 	private void maybeClearCosmetics(ClientLevel level, CallbackInfo info) {
-		if (PlayerData.getCacheSize() > 1024) {
-			DebugMode.log("Clearing Cosmetica Caches");
-			Cosmetica.clearAllCaches();
-		}
+		PlayerData.evictColdEntries();
 
 		// also do the check thing
 		if (Cosmetica.displayNext != null) {
@@ -33,7 +33,7 @@ public class PlayerMixin {
 		final Player player = ((Player) (Object) this);
 
 		if (player.getLevel().isClientSide()) {
-			PlayerData data = PlayerData.get(player.getUUID(), player.getName().getString(), false);
+			PlayerData data = PlayerData.get(player);
 			String prefix = (data.icon() == null ? "" : "\u2001") + data.prefix();
 			String suffix = data.suffix();
 
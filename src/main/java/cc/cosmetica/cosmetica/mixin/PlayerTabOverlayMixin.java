@@ -40,7 +40,7 @@ public class PlayerTabOverlayMixin {
 
 	@Inject(at = @At("RETURN"), method = "getNameForDisplay", cancellable = true)
 	private void modifyTablistDisplayName(PlayerInfo playerInfo, CallbackInfoReturnable<Component> info) {
-		PlayerData data = PlayerData.get(playerInfo.getProfile().getId(), playerInfo.getProfile().getName(), false);
+		PlayerData data = PlayerData.get(playerInfo);
 
 		if (data.icon() != null) {
 			info.setReturnValue(TextComponents.literal("\u2001").append(info.getReturnValue()));
@@ -56,6 +56,6 @@ public class PlayerTabOverlayMixin {
 	@Inject(at = @At("HEAD"), method = "renderPingIcon")
 	private void onRenderPingIcon(PoseStack stack, int p, int x, int y, PlayerInfo playerInfo, CallbackInfo ci) {
 		boolean bl = this.minecraft.isLocalServer() || this.minecraft.getConnection().getConnection().isEncrypted();
-		Cosmetica.renderTabIcon(stack, x + (bl ? 9 : 0), y, playerInfo.getProfile().getId(), playerInfo.getProfile().getName());
+		Cosmetica.renderTabIcon(stack, x + (bl ? 9 : 0), y, playerInfo);
 	}
 }
@@ -19,6 +19,7 @@ package cc.cosmetica.cosmetica.mixin.textures;
 import cc.cosmetica.cosmetica.Cosmetica;
 import cc.cosmetica.cosmetica.CosmeticaSkinManager;
 import cc.cosmetica.cosmetica.cosmetics.PlayerData;
+import cc.cosmetica.cosmetica.cosmetics.PlayerDataHolder;
 import com.mojang.authlib.GameProfile;
 import net.minecraft.client.player.AbstractClientPlayer;
 import net.minecraft.core.BlockPos;
@@ -26,16 +27,25 @@ import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.Level;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(AbstractClientPlayer.class)
-public abstract class AbstractClientPlayerMixin extends Player {
+public abstract class AbstractClientPlayerMixin extends Player implements PlayerDataHolder {
 	public AbstractClientPlayerMixin(Level level, BlockPos blockPos, float f, GameProfile gameProfile) {
 		super(level, blockPos, f, gameProfile);
 	}
 
+	@Unique
+	private final PlayerData.Handle cosmeticaPlayerDataHandle = new PlayerData.Handle();
+
+	@Override
+	public PlayerData.Handle getPlayerDataHandle() {
+		return this.cosmeticaPlayerDataHandle;
+	}
+
 	@Inject(at = @At("HEAD"), method = "isCapeLoaded", cancellable = true)
 	private void isCosmeticaCapeLoaded(CallbackInfoReturnable<Boolean> info) {
 		if (!Cosmetica.isProbablyNPC(this.uuid)) info.setReturnValue(PlayerData.has(this.uuid));
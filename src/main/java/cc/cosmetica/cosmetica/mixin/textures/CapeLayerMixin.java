@@ -16,6 +16,11 @@
 
 package cc.cosmetica.cosmetica.mixin.textures;
 
+import cc.cosmetica.cosmetica.utils.textures.FrameSheet;
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.minecraft.client.player.AbstractClientPlayer;
+import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.entity.layers.CapeLayer;
 import net.minecraft.resources.ResourceLocation;
@@ -32,4 +37,12 @@ public class CapeLayerMixin {
 	private RenderType allowTransparentCapes(ResourceLocation location) {
 		return RenderType.entityTranslucent(location);
 	}
+
+	@Redirect(
+			method = "render(Lcom/mojang/blaze3d/vertex/PoseStack;Lnet/minecraft/client/renderer/MultiBufferSource;ILnet/minecraft/client/player/AbstractClientPlayer;FFFFFF)V",
+			at = @At(value = "INVOKE", target = "Lnet/minecraft/client/renderer/MultiBufferSource;getBuffer(Lnet/minecraft/client/renderer/RenderType;)Lcom/mojang/blaze3d/vertex/VertexConsumer;")
+	)
+	private VertexConsumer selectCapeFrame(MultiBufferSource buffers, RenderType layer, PoseStack stack, MultiBufferSource bufferSource, int packedLight, AbstractClientPlayer player, float f, float g, float h, float j, float k, float l) {
+		return FrameSheet.selectFrame(player.getCloakTextureLocation(), buffers.getBuffer(layer));
+	}
 }
@@ -16,6 +16,7 @@
 
 package cc.cosmetica.cosmetica.mixin.textures;
 
+import cc.cosmetica.cosmetica.utils.textures.FrameSheet;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import com.mojang.blaze3d.vertex.VertexMultiConsumer;
 import net.minecraft.client.renderer.MultiBufferSource;
@@ -23,16 +24,24 @@ import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.entity.layers.ElytraLayer;
 import net.minecraft.resources.ResourceLocation;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Redirect;
 
 @Mixin(ElytraLayer.class)
 public abstract class ElytraLayerMixin {
+	/**
+	 * The texture of the wings currently being rendered, so the current frame can be selected if it's animated.
+	 */
+	@Unique
+	private ResourceLocation cosmeticaWingsTexture;
+
 	@Redirect(
 			method = "render(Lcom/mojang/blaze3d/vertex/PoseStack;Lnet/minecraft/client/renderer/MultiBufferSource;ILnet/minecraft/world/entity/LivingEntity;FFFFFF)V",
 			at = @At(value = "INVOKE", target = "Lnet/minecraft/client/renderer/RenderType;armorCutoutNoCull(Lnet/minecraft/resources/ResourceLocation;)Lnet/minecraft/client/renderer/RenderType;")
 	)
 	private RenderType enableElytraTransparency(ResourceLocation resourceLocation) {
+		this.cosmeticaWingsTexture = resourceLocation;
 		return RenderType.entityTranslucent(resourceLocation);
 	}
 
@@ -41,6 +50,7 @@ public abstract class ElytraLayerMixin {
 			at = @At(value = "INVOKE", target = "Lnet/minecraft/client/renderer/entity/ItemRenderer;getArmorFoilBuffer(Lnet/minecraft/client/renderer/MultiBufferSource;Lnet/minecraft/client/renderer/RenderType;ZZ)Lcom/mojang/blaze3d/vertex/VertexConsumer;")
 	)
 	private VertexConsumer allowTransparentWings(MultiBufferSource buffers, RenderType layer, boolean armour, boolean glint) {
-		return glint ? VertexMultiConsumer.create(buffers.getBuffer(RenderType.entityGlint()), buffers.getBuffer(layer)) : buffers.getBuffer(layer);
+		VertexConsumer wings = FrameSheet.selectFrame(this.cosmeticaWingsTexture, buffers.getBuffer(layer));
+		return glint ? VertexMultiConsumer.create(buffers.getBuffer(RenderType.entityGlint()), wings) : wings;
 	}
 }
@@ -23,6 +23,7 @@ import cc.cosmetica.api.CosmeticPosition;
 import cc.cosmetica.api.CosmeticType;
 import cc.cosmetica.api.CustomCosmetic;
 import cc.cosmetica.api.Model;
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
 import cc.cosmetica.cosmetica.cosmetics.model.CosmeticStack;
 import cc.cosmetica.cosmetica.screens.fakeplayer.MouseTracker;
 import cc.cosmetica.cosmetica.utils.TextComponents;
@@ -55,8 +56,8 @@ public class ApplyCosmeticsScreen<T extends CustomCosmetic, E> extends SulphateS
 			}
 		}
 		else if (cosmetic instanceof Cape cape) {
-			this.item = (E) CosmeticaSkinManager.textureId("cape", this.id);
-			CosmeticaSkinManager.processCape(cape);
+			this.item = (E) CosmeticaSkinManager.processCape(cape);
+			this.failed = this.item == null;
 		}
 		else if (cosmetic instanceof Model model) {
 			this.item = (E) Models.createBakableModel(model);
@@ -113,7 +114,7 @@ public class ApplyCosmeticsScreen<T extends CustomCosmetic, E> extends SulphateS
 				this.parentParent.fakePlayer.yRotBody = this.lmao;
 				this.parentParent.fakePlayer.yRot = this.xd;
 
-				this.minecraft.setScreen(new UpdatingCosmeticsScreen<>(this.parentParent, () -> Cosmetica.api.setCosmetic(this.positionOf(this.selectableFakePlayers.getSelected()), this.id)));
+				this.minecraft.setScreen(new UpdatingCosmeticsScreen<>(this.parentParent, () -> ApiCircuitBreaker.call(() -> Cosmetica.api.setCosmetic(this.positionOf(this.selectableFakePlayers.getSelected()), this.id))));
 			});
 
 			if (selectables > 1) {
@@ -23,6 +23,7 @@ import cc.cosmetica.api.CosmeticType;
 import cc.cosmetica.api.CosmeticsPage;
 import cc.cosmetica.api.CustomCosmetic;
 import cc.cosmetica.api.Model;
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
 import cc.cosmetica.cosmetica.Cosmetica;
 import cc.cosmetica.cosmetica.CosmeticaSkinManager;
 import cc.cosmetica.cosmetica.cosmetics.model.CosmeticStack;
@@ -96,7 +97,7 @@ public class BrowseCosmeticsScreen<T extends CustomCosmetic, E> extends PlayerRe
 		case RELOADING:
 			this.addMainGUI(true);
 		case LOADING:
-			this.currentFetcher = this.addWidget(new FetchingCosmetics<>(getTranslationPart(this.type), () -> ImmutableList.of(Cosmetica.api.getRecentCosmetics(this.type, this.page, 8, Optional.ofNullable(this.searchQuery))),
+			this.currentFetcher = this.addWidget(new FetchingCosmetics<>(getTranslationPart(this.type), () -> ImmutableList.of(ApiCircuitBreaker.call(() -> Cosmetica.api.getRecentCosmetics(this.type, this.page, 8, Optional.ofNullable(this.searchQuery)))),
 			(fetcher, results) -> {
 				if (results.isEmpty()) {
 					this.state = LoadState.FAILED;
@@ -316,9 +317,7 @@ public class BrowseCosmeticsScreen<T extends CustomCosmetic, E> extends PlayerRe
 			}
 		}
 		if (cosmetic instanceof Cape cape) {
-			E result = (E) CosmeticaSkinManager.textureId("cape", cosmetic.getId());
-			CosmeticaSkinManager.processCape(cape);
-			return result;
+			return (E) CosmeticaSkinManager.processCape(cape);
 		}
 		else if (cosmetic instanceof Model model) {
 			return  (E) Models.createBakableModel(model);
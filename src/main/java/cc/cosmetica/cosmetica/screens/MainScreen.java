@@ -21,6 +21,7 @@ import cc.cosmetica.api.CapeDisplay;
 import cc.cosmetica.api.CapeServer;
 import cc.cosmetica.api.FatalServerErrorException;
 import cc.cosmetica.api.UserSettings;
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
 import cc.cosmetica.cosmetica.Authentication;
 import cc.cosmetica.impl.CosmeticaWebAPI;
 import cc.cosmetica.cosmetica.Cosmetica;
@@ -159,6 +160,13 @@ public class MainScreen extends PlayerRenderScreen {
 		super.render(matrices, mouseX, mouseY, delta);
 		this.renderRSENotif(matrices, mouseX, mouseY);
 
+		// let the user know if we've stopped contacting the servers
+		switch (ApiCircuitBreaker.getState()) {
+		case OPEN -> drawCenteredString(matrices, this.font, TextComponents.formattedTranslatable("cosmetica.outage", (ApiCircuitBreaker.getRetryIn() + 999) / 1000), this.width / 2, 4, 0xFF5555);
+		case HALF_OPEN -> drawCenteredString(matrices, this.font, TextComponents.translatable("cosmetica.outage.probing"), this.width / 2, 4, 0xFFAA00);
+		default -> {}
+		}
+
 		RenderSystem.enableBlend();
 		Cosmetica.renderTexture(matrices.last().pose(), DISCORD, this.width - 10 - 19, this.width - 10, 10, 10 + 15, 0, this.isMouseOnDiscord(mouseX, mouseY) ? 1.0f : 0.5f);
 	}
@@ -17,6 +17,7 @@
 package cc.cosmetica.cosmetica.screens;
 
 import cc.cosmetica.api.Box;
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
 import cc.cosmetica.cosmetica.Cosmetica;
 import cc.cosmetica.cosmetica.cosmetics.CapeData;
 import cc.cosmetica.cosmetica.cosmetics.PlayerData;
@@ -103,7 +104,7 @@ public class RSEWarningScreen extends Screen {
 	private void setRSEAndClose(boolean enabled) {
 		Thread requestThread = new Thread(() -> {
 			if (Cosmetica.api.isAuthenticated()) {
-				Cosmetica.api.updateUserSettings(ImmutableMap.of("doregioneffects", enabled)).ifSuccessfulOrElse(j -> DebugMode.log("Received successful response for RSE update."), Cosmetica.logErr("Error while setting region specific effects!"));
+				ApiCircuitBreaker.call(() -> Cosmetica.api.updateUserSettings(ImmutableMap.of("doregioneffects", enabled))).ifSuccessfulOrElse(j -> DebugMode.log("Received successful response for RSE update."), Cosmetica.logErr("Error while setting region specific effects!"));
 			}
 			else {
 				Cosmetica.LOGGER.warn("Could not update RSE because you are not authenticated!");
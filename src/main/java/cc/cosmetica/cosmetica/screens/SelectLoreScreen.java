@@ -20,6 +20,7 @@ import benzenestudios.sulphate.ExtendedScreen;
 import benzenestudios.sulphate.SulphateScreen;
 import cc.cosmetica.api.CosmeticType;
 import cc.cosmetica.api.LoreType;
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
 import cc.cosmetica.cosmetica.Cosmetica;
 import cc.cosmetica.cosmetica.screens.widget.FetchingCosmetics;
 import cc.cosmetica.cosmetica.screens.widget.StringSelection;
@@ -68,7 +69,7 @@ public class SelectLoreScreen extends SulphateScreen {
 	@Override
 	protected void addWidgets() {
 		if (this.fetching == null) {
-			this.fetching = this.addWidget((x, y, w, h, component) -> new FetchingCosmetics<>("Lore", () -> ImmutableList.of(Cosmetica.api.getLoreList(LoreType.TITLES), Cosmetica.api.getLoreList(LoreType.PRONOUNS)), (obj, titles) -> {
+			this.fetching = this.addWidget((x, y, w, h, component) -> new FetchingCosmetics<>("Lore", () -> ImmutableList.of(ApiCircuitBreaker.call(() -> Cosmetica.api.getLoreList(LoreType.TITLES)), ApiCircuitBreaker.call(() -> Cosmetica.api.getLoreList(LoreType.PRONOUNS))), (obj, titles) -> {
 				if (obj == this.fetching) {
 					if (titles.isEmpty()) {
 						this.auth = false;
@@ -170,7 +171,7 @@ public class SelectLoreScreen extends SulphateScreen {
 					this.onClose();
 				}
 				else {
-					this.minecraft.setScreen(new UpdatingCosmeticsScreen<>(this.parent, () -> Cosmetica.api.setLore(this.lore.isEmpty() ? LoreType.NONE : (this.setPronouns ? LoreType.PRONOUNS : LoreType.TITLES), this.lore)));
+					this.minecraft.setScreen(new UpdatingCosmeticsScreen<>(this.parent, () -> ApiCircuitBreaker.call(() -> Cosmetica.api.setLore(this.lore.isEmpty() ? LoreType.NONE : (this.setPronouns ? LoreType.PRONOUNS : LoreType.TITLES), this.lore))));
 				}
 			}));
 		}
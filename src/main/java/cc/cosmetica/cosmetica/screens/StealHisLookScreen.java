@@ -21,6 +21,7 @@ import benzenestudios.sulphate.SulphateScreen;
 import cc.cosmetica.api.CosmeticPosition;
 import cc.cosmetica.api.ServerResponse;
 import cc.cosmetica.api.User;
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
 import cc.cosmetica.cosmetica.Cosmetica;
 import cc.cosmetica.cosmetica.cosmetics.PlayerData;
 import cc.cosmetica.cosmetica.cosmetics.model.BakableModel;
@@ -141,7 +142,7 @@ public class StealHisLookScreen extends SulphateScreen {
 	}
 
 	private static ServerResponse<Boolean> setCosmeticNotifyErr(CosmeticPosition position, String id) {
-		ServerResponse<Boolean> response = Cosmetica.api.setCosmetic(position, id);
+		ServerResponse<Boolean> response = ApiCircuitBreaker.call(() -> Cosmetica.api.setCosmetic(position, id));
 		response.ifError(Cosmetica.logErr("Error setting " + position.getUrlString() + " in steal-his-look"));
 		return response;
 	}
@@ -17,9 +17,12 @@
 package cc.cosmetica.cosmetica.screens;
 
 import cc.cosmetica.api.CapeDisplay;
+import cc.cosmetica.cosmetica.ApiCircuitBreaker;
 import cc.cosmetica.cosmetica.Authentication;
 import cc.cosmetica.cosmetica.Cosmetica;
+import cc.cosmetica.cosmetica.cosmetics.LookupBackoff;
 import cc.cosmetica.cosmetica.cosmetics.PlayerData;
+import cc.cosmetica.cosmetica.cosmetics.PlayerDiskCache;
 import cc.cosmetica.cosmetica.utils.DebugMode;
 import cc.cosmetica.cosmetica.utils.LoadingTypeScreen;
 import com.mojang.blaze3d.vertex.PoseStack;
@@ -62,8 +65,11 @@ public class UpdatingSettingsScreen extends Screen implements LoadingTypeScreen
 
 		if (!changedSettings.isEmpty()) {
 			Thread requestThread = new Thread(() -> {
-				Cosmetica.api.updateUserSettings(changedSettings).ifSuccessfulOrElse(response -> {
+				ApiCircuitBreaker.call(() -> Cosmetica.api.updateUserSettings(changedSettings)).ifSuccessfulOrElse(response -> {
 					if (finalDoReload) Minecraft.getInstance().tell(() -> {
+						// what we are sent about other players depends on our settings
+						PlayerDiskCache.clear();
+						LookupBackoff.clearNoData();
 						Cosmetica.clearAllCaches();
 
 						if (response.booleanValue() && this.parentScreen instanceof PlayerRenderScreen playerRenderScreen) {
@@ -103,7 +109,7 @@ public class UpdatingSettingsScreen extends Screen implements LoadingTypeScreen
 		if (updateCapeServerSettings) {
 			DebugMode.log("Updating cape server settings.");
 			Thread requestThread = new Thread(() -> {
-				Cosmetica.api.setCapeServerSettings(newOptions).ifSuccessfulOrElse(response -> {
+				ApiCircuitBreaker.call(() -> Cosmetica.api.setCapeServerSettings(newOptions)).ifSuccessfulOrElse(response -> {
 					if (this.parentScreen instanceof MainScreen main) {
 						main.setCapeServerSettings(response);
 
@@ -118,7 +124,11 @@ public class UpdatingSettingsScreen extends Screen implements LoadingTypeScreen
 					Authentication.showUnauthenticatedIfLoading(true, e);
 				});
 
-				Minecraft.getInstance().tell(() -> Cosmetica.clearAllCaches());
+				Minecraft.getInstance().tell(() -> {
+					PlayerDiskCache.clear();
+					LookupBackoff.clearNoData();
+					Cosmetica.clearAllCaches();
+				});
 			});
 			requestThread.start();
 		} else {
@@ -17,12 +17,14 @@
 package cc.cosmetica.cosmetica.screens.fakeplayer;
 
 import cc.cosmetica.cosmetica.mixin.fakeplayer.PlayerModelAccessor;
+import cc.cosmetica.cosmetica.utils.textures.FrameSheet;
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import com.mojang.math.Vector3f;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderType;
 import net.minecraft.client.renderer.texture.OverlayTexture;
+import net.minecraft.resources.ResourceLocation;
 import net.minecraft.util.Mth;
 
 public class MenuCapeLayer implements MenuRenderLayer {
@@ -54,7 +56,8 @@ public class MenuCapeLayer implements MenuRenderLayer {
 			stack.mulPose(Vector3f.XP.rotationDegrees(6.0F + r / 2.0F + q));
 			stack.mulPose(Vector3f.ZP.rotationDegrees(s / 2.0F));
 			stack.mulPose(Vector3f.YP.rotationDegrees(180.0F - s / 2.0F));
-			VertexConsumer vertexConsumer = bufferSource.getBuffer(RenderType.entityTranslucent(player.getRenderableCape()));
+			ResourceLocation cape = player.getRenderableCape();
+			VertexConsumer vertexConsumer = FrameSheet.selectFrame(cape, bufferSource.getBuffer(RenderType.entityTranslucent(cape)));
 			((PlayerModelAccessor) player.getModel()).getCloak().render(stack, vertexConsumer, packedLight, OverlayTexture.NO_OVERLAY);
 			stack.popPose();
 		}
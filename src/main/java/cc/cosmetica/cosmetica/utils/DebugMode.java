@@ -138,6 +138,20 @@ public class DebugMode {
 		return ENABLED && debugSettings.forceRseScreen;
 	}
 
+	/**
+	 * Whether player lookups should be answered by the local stand-in instead of the API.
+	 */
+	public static boolean lookupStandIn() {
+		return ENABLED && debugSettings.lookupStandIn;
+	}
+
+	/**
+	 * The simulated latency, in ms, of the local stand-in for player lookups.
+	 */
+	public static int lookupStandInLatency() {
+		return debugSettings.lookupStandInLatency;
+	}
+
 	private static boolean loadTestModel(CosmeticStack<BakableModel> model, String modelLoc, int extraInfo) {
 		File modelJsonF = new File(CONFIG_DIR, modelLoc + ".json");
 
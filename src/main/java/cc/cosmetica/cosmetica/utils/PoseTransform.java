@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cc.cosmetica.cosmetica.utils;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.math.Matrix3f;
+import com.mojang.math.Matrix4f;
+import com.mojang.math.Quaternion;
+
+import java.util.function.Consumer;
+
+/**
+ * A transformation of a {@link PoseStack}, precomputed so that applying it doesn't allocate the matrices and
+ * quaternions {@link PoseStack#scale} and {@link PoseStack#mulPose} create on every call.
+ */
+public final class PoseTransform {
+	private PoseTransform(Matrix4f pose, Matrix3f normal) {
+		this.pose = pose;
+		this.normal = normal;
+	}
+
+	private final Matrix4f pose;
+	private final Matrix3f normal;
+
+	/**
+	 * Apply this transformation to the top of the given stack, the same as the operations it was created from would.
+	 */
+	public void applyTo(PoseStack stack) {
+		PoseStack.Pose last = stack.last();
+		last.pose().multiply(this.pose);
+		last.normal().mul(this.normal);
+	}
+
+	/**
+	 * Apply this transformation to the given matrices.
+	 */
+	public void applyTo(Matrix4f pose, Matrix3f normal) {
+		pose.multiply(this.pose);
+		normal.mul(this.normal);
+	}
+
+	/**
+	 * Set this transformation to a rotation by the given quaternion. Allocates, so call this only when the rotation
+	 * has changed.
+	 */
+	public void setRotation(Quaternion rotation) {
+		this.pose.load(new Matrix4f(rotation));
+		this.normal.load(new Matrix3f(rotation));
+	}
+
+	/**
+	 * Precompute the transformation made by the given operations on a pose stack.
+	 */
+	public static PoseTransform of(Consumer<PoseStack> operations) {
+		PoseStack stack = new PoseStack();
+		operations.accept(stack);
+		return new PoseTransform(stack.last().pose().copy(), stack.last().normal().copy());
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica.utils;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.math.Matrix3f;
+import com.mojang.math.Matrix4f;
+
+/**
+ * Holds a copy of the top of a {@link PoseStack}, so it can be transformed and then put back as it was, without the new
+ * pose {@link PoseStack#pushPose} allocates. Saves don't nest, so each place saving a pose needs its own. Should only be
+ * used on the render thread.
+ */
+public final class SavedPose {
+	private final Matrix4f pose = new Matrix4f();
+	private final Matrix3f normal = new Matrix3f();
+
+	public void save(PoseStack stack) {
+		PoseStack.Pose last = stack.last();
+		this.pose.load(last.pose());
+		this.normal.load(last.normal());
+	}
+
+	public void restore(PoseStack stack) {
+		PoseStack.Pose last = stack.last();
+		last.pose().load(this.pose);
+		last.normal().load(this.normal);
+	}
+}
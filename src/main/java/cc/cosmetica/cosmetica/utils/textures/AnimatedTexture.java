@@ -20,9 +20,17 @@ import cc.cosmetica.cosmetica.utils.DebugMode;
 import cc.cosmetica.cosmetica.mixin.textures.NativeImageAccessorMixin;
 import com.mojang.blaze3d.platform.NativeImage;
 import com.mojang.blaze3d.platform.TextureUtil;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.Util;
 import net.minecraft.client.renderer.texture.AbstractTexture;
 
-public abstract class AnimatedTexture extends AbstractTexture {
+public abstract class AnimatedTexture extends AbstractTexture implements FrameSheet {
+	/**
+	 * How long, in ms, after a texture was last drawn to keep uploading its frames. Only applies to sheets uploaded a
+	 * frame at a time.
+	 */
+	private static final long IDLE_MS = Long.parseLong(System.getProperty("cosmetica.animationIdleMs", "1000"));
+
 	public AnimatedTexture(int aspectRatio) {
 		this.aspectRatio = aspectRatio;
 	}
@@ -33,8 +41,17 @@ public abstract class AnimatedTexture extends AbstractTexture {
 	protected final int aspectRatio;
 	private int frames = 1;
 	private int frameHeight;
+	/**
+	 * The frame currently uploaded, if uploading a frame at a time.
+	 */
 	private int frame;
-	private int tick;
+	private final long animationStart = Util.getMillis();
+	private long lastRendered;
+	/**
+	 * Whether every frame is on the GPU, so changing frame needs no upload. Sheets too tall for the GPU are uploaded a
+	 * frame at a time instead.
+	 */
+	private boolean wholeSheetUploaded;
 
 	protected void setupAnimations() throws IllegalStateException {
 		if (!this.isAnimatable()) {
@@ -57,22 +74,86 @@ public abstract class AnimatedTexture extends AbstractTexture {
 	}
 
 	protected void upload() {
-		TextureUtil.prepareImage(this.getId(), 0, this.image.getWidth(), this.frameHeight);
-		this.image.upload(0, 0, 0, 0, this.frameHeight * this.frame, this.image.getWidth(), this.frameHeight, this.blur, false, false, false);
+		this.wholeSheetUploaded = this.image.getHeight() <= RenderSystem.maxSupportedTextureSize();
+
+		if (this.wholeSheetUploaded) {
+			// super.getId() so uploading doesn't count as the texture being drawn
+			TextureUtil.prepareImage(super.getId(), 0, this.image.getWidth(), this.image.getHeight());
+			this.image.upload(0, 0, 0, 0, 0, this.image.getWidth(), this.image.getHeight(), this.blur, false, false, false);
+		} else {
+			TextureUtil.prepareImage(super.getId(), 0, this.image.getWidth(), this.frameHeight);
+			this.image.upload(0, 0, 0, 0, this.frameHeight * this.frame, this.image.getWidth(), this.frameHeight, this.blur, false, false, false);
+		}
 	}
 
+	/**
+	 * @return whether every frame of this texture is on the GPU, so the CPU copy of the image isn't needed to animate it.
+	 */
+	public boolean isWholeSheetUploaded() {
+		return this.wholeSheetUploaded;
+	}
+
+	/**
+	 * Called once the image returned by {@link AnimatedTexture#getRawImage()} is no longer needed. Textures which can
+	 * decode their image again may free it.
+	 */
+	public void releaseRawImage() {
+	}
+
+	/**
+	 * Upload the current frame, if this texture is uploaded a frame at a time and has been drawn recently. Textures on
+	 * the GPU whole have nothing to do here, as their frame is selected when drawing.
+	 */
 	protected void doTick() {
-		if (((NativeImageAccessorMixin) (Object) this.image).getPixels() != 0) {
-			this.tick = (this.tick + 1) % this.frameCounterTicks;
+		if (this.wholeSheetUploaded) return;
+
+		long now = Util.getMillis();
+		if (now - this.lastRendered > IDLE_MS) return;
 
-			if (this.tick == 0) {
-				this.frame = (this.frame + 1) % this.frames;
+		int frame = this.frameAt(now);
 
-				this.upload();
-			}
+		if (frame != this.frame && ((NativeImageAccessorMixin) (Object) this.image).getPixels() != 0) {
+			this.frame = frame;
+			this.upload();
 		}
 	}
 
+	/**
+	 * Get the frame which should be showing at the given time. Frames follow the clock rather than being counted, so a
+	 * texture which hasn't been drawn for a while shows the right frame as soon as it is drawn again.
+	 */
+	private int frameAt(long time) {
+		return (int) ((time - this.animationStart) / (50L * this.frameCounterTicks) % this.frames);
+	}
+
+	/**
+	 * Textures are bound by id whenever they are drawn, so this also records when the texture was last drawn.
+	 */
+	@Override
+	public int getId() {
+		this.lastRendered = Util.getMillis();
+		return super.getId();
+	}
+
+	/**
+	 * @return the time, in ms, this texture was last drawn.
+	 */
+	public long getLastRendered() {
+		return this.lastRendered;
+	}
+
+	@Override
+	public int getFrameToRender() {
+		long now = Util.getMillis();
+		this.lastRendered = now;
+		return this.wholeSheetUploaded ? this.frameAt(now) : 0;
+	}
+
+	@Override
+	public int getSheetFrames() {
+		return this.wholeSheetUploaded ? this.frames : 1;
+	}
+
 	/**
 	 * Get the raw image being used by this animated texture, including all frames.
 	 */
@@ -101,7 +182,7 @@ public abstract class AnimatedTexture extends AbstractTexture {
 				", frames=" + frames +
 				", frameHeight=" + frameHeight +
 				", frame=" + frame +
-				", tick=" + tick +
+				", lastRendered=" + lastRendered +
 				'}';
 	}
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica.utils.textures;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes base64 straight into an off-heap buffer, skipping whitespace as it goes, without any intermediate copies of
+ * the data on the heap.
+ */
+public final class Base64Decoder {
+	private static final byte INVALID = -1;
+	private static final byte WHITESPACE = -2;
+	private static final byte[] VALUES = new byte[128];
+
+	static {
+		Arrays.fill(VALUES, INVALID);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+		for (int i = 0; i < alphabet.length(); i++) {
+			VALUES[alphabet.charAt(i)] = (byte) i;
+		}
+
+		VALUES['\n'] = WHITESPACE;
+		VALUES['\r'] = WHITESPACE;
+		VALUES['\t'] = WHITESPACE;
+		VALUES[' '] = WHITESPACE;
+	}
+
+	// metrics
+	private static final AtomicLong decodedBytes = new AtomicLong();
+	private static final AtomicLong decodeNanos = new AtomicLong();
+
+	/**
+	 * Decode base64 data into a buffer allocated with {@link MemoryUtil#memAlloc}. The caller is responsible for freeing it.
+	 * @param data the base64 data.
+	 * @param start the index of the first character to decode, for skipping a header.
+	 * @return the buffer, positioned at the start of the decoded data and limited to its end.
+	 * @throws IllegalArgumentException if the data is not valid base64.
+	 */
+	public static ByteBuffer decode(String data, int start) {
+		long startTime = System.nanoTime();
+		int length = data.length();
+		ByteBuffer out = MemoryUtil.memAlloc(Math.max(1, (length - start) / 4 * 3 + 3));
+
+		try {
+			int bits = 0;
+			int count = 0;
+
+			for (int i = start; i < length; i++) {
+				char c = data.charAt(i);
+				if (c == '=') break; // padding
+
+				byte value = c < 128 ? VALUES[c] : INVALID;
+				if (value == WHITESPACE) continue;
+				if (value == INVALID) throw new IllegalArgumentException("Illegal base64 character '" + c + "' at index " + i);
+
+				bits = (bits << 6) | value;
+
+				if (++count == 4) {
+					out.put((byte) (bits >> 16));
+					out.put((byte) (bits >> 8));
+					out.put((byte) bits);
+					bits = 0;
+					count = 0;
+				}
+			}
+
+			// the last group has 1 or 2 bytes if it was padded
+			switch (count) {
+			case 1 -> throw new IllegalArgumentException("Truncated base64 data");
+			case 2 -> out.put((byte) (bits >> 4));
+			case 3 -> {
+				out.put((byte) (bits >> 10));
+				out.put((byte) (bits >> 2));
+			}
+			default -> {}
+			}
+
+			out.flip();
+		} catch (RuntimeException e) {
+			MemoryUtil.memFree(out);
+			throw e;
+		}
+
+		decodedBytes.addAndGet(out.limit());
+		decodeNanos.addAndGet(System.nanoTime() - startTime);
+		return out;
+	}
+
+	public static String getStats() {
+		long nanos = decodeNanos.get();
+		long bytes = decodedBytes.get();
+
+		return "Base64 decoded: " + bytes / 1024 + " KiB in " + nanos / 1_000_000 + "ms"
+				+ (nanos == 0 ? "" : " (" + (bytes * 1000 / nanos) + " MB/s)");
+	}
+}
@@ -24,27 +24,123 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import net.minecraft.client.renderer.texture.Tickable;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.resources.ResourceManager;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.system.MemoryUtil;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * A texture decoded from base64 image data. The PNG bytes are kept off-heap, so the texture can be decoded again if the
+ * GPU copy is lost.
+ */
 public class Base64Texture extends AnimatedTexture {
-	private Base64Texture(ResourceLocation path, String base64, NativeImage initialImage, int aspectRatio) throws IOException {
+	private Base64Texture(ResourceLocation path, ByteBuffer png, NativeImage initialImage, int aspectRatio) throws IOException {
 		super(aspectRatio);
-		this.base64 = base64;
+		this.png = png;
 		this.path = path;
+		this.size = 4L * initialImage.getWidth() * initialImage.getHeight();
 
 		this.loadImage(initialImage);
+		reloadDataSize.addAndGet(png.capacity());
 	}
 
+	/**
+	 * The length of the data uri header ("data:image/png;base64,") before the base64 data.
+	 */
+	private static final int HEADER_LENGTH = 22;
+	private static final AtomicLong reloadDataSize = new AtomicLong();
+	/**
+	 * Whether to free the decoded image once it is on the GPU, for textures which don't need it to animate. It is decoded
+	 * again from the PNG data when needed.
+	 */
+	private static final boolean FREE_UPLOADED_PIXELS = Boolean.parseBoolean(System.getProperty("cosmetica.freeUploadedPixels", "true"));
+	private static final AtomicLong freedPixelsSize = new AtomicLong();
+
 	private final ResourceLocation path;
-	private final String base64;
+	/**
+	 * The PNG this texture was decoded from, allocated with {@link MemoryUtil#memAlloc}. Null once closed.
+	 */
+	@Nullable
+	private ByteBuffer png;
+	/**
+	 * The size, in bytes, of the decoded image.
+	 */
+	private final long size;
+	/**
+	 * Whether the GPU and CPU copies of this texture have been freed to stay within the texture memory budget. The
+	 * texture stays registered, and is decoded and uploaded again next time it is drawn.
+	 */
+	private boolean evicted;
+	/**
+	 * Whether the decoded image has been freed after upload, and is counted in {@link Base64Texture#freedPixelsSize}.
+	 */
+	private boolean pixelsFreed;
+
+	@Override
+	public int getId() {
+		if (this.evicted) {
+			this.evicted = false;
+			this.reload();
+		}
+
+		return super.getId();
+	}
+
+	@Override
+	protected void upload() {
+		super.upload();
+		this.releaseRawImage();
+	}
+
+	@Override
+	public void releaseRawImage() {
+		if (!FREE_UPLOADED_PIXELS || !this.isWholeSheetUploaded() || this.png == null || this.pixelsFreed) return;
+
+		this.image.close();
+		this.pixelsFreed = true;
+		freedPixelsSize.addAndGet(this.size);
+	}
+
+	@Override
+	public NativeImage getRawImage() {
+		this.restoreImage();
+		return this.image;
+	}
+
+	/**
+	 * Free the GPU and CPU copies of this texture. Should be called on the render thread.
+	 */
+	public void evict() {
+		if (this.evicted || this.png == null) return;
+
+		DebugMode.log("Evicting texture {}", this.path);
+		this.releaseId();
+		this.image.close();
+		this.evicted = true;
+	}
+
+	/**
+	 * @return whether this texture is currently taking up memory on the GPU.
+	 */
+	public boolean isResident() {
+		return !this.evicted && this.png != null;
+	}
+
+	/**
+	 * @return the size, in bytes, of the decoded image.
+	 */
+	public long getSize() {
+		return this.size;
+	}
 
 	@Override
 	public void load(ResourceManager resourceManager) {
+		// evicted textures are decoded and uploaded again by getId() when next drawn, so reloading resources doesn't bring
+		// them all back at once
+		if (this.evicted) return;
+
 		if (((NativeImageAccessorMixin) (Object) this.image).getPixels() == 0) {
 			if (RenderSystem.isOnRenderThreadOrInit()) {
 				this.reload();
@@ -60,11 +156,32 @@ public class Base64Texture extends AnimatedTexture {
 
 	private void reload() {
 		DebugMode.log("Re-uploading texture {}", this.path);
-		try {
-			this.loadImage(loadBase64(this.base64)); // load the image
+
+		if (this.restoreImage()) {
 			this.upload();
+		}
+	}
+
+	/**
+	 * Decode the image again from the PNG data if its pixels have been freed.
+	 * @return whether the image has pixels.
+	 */
+	private boolean restoreImage() {
+		if (((NativeImageAccessorMixin) (Object) this.image).getPixels() != 0) return true;
+		if (this.png == null) return false; // closed
+
+		try {
+			this.loadImage(NativeImage.read(this.png.rewind()));
+
+			if (this.pixelsFreed) {
+				this.pixelsFreed = false;
+				freedPixelsSize.addAndGet(-this.size);
+			}
+
+			return true;
 		} catch (IOException e) {
-			Cosmetica.LOGGER.error("Error re-uploading Base64 Texture", e);
+			Cosmetica.LOGGER.error("Error re-decoding Base64 Texture", e);
+			return false;
 		}
 	}
 
@@ -79,50 +196,84 @@ public class Base64Texture extends AnimatedTexture {
 		}
 	}
 
-    private static NativeImage loadBase64(String base64) throws IOException {
-        if(base64.length() < 1000) { //TODO: Tweak this number
-            return NativeImage.fromBase64(base64);
-        } else {
-            //For large images, NativeImage.fromBase64 does not work because it tries to allocate it on the stack and fails
-            byte[] bs = Base64.getDecoder().decode(base64.replace("\n", "").getBytes(StandardCharsets.UTF_8));
-            ByteBuffer buffer = MemoryUtil.memAlloc(bs.length);
-            buffer.put(bs);
-            buffer.rewind();
-            NativeImage image = NativeImage.read(buffer);
-            MemoryUtil.memFree(buffer);
-            return image;
-        }
-    }
-
-	public static Base64Texture square(ResourceLocation path, String base64, int frameDelayMs) throws IOException {
-		NativeImage image = loadBase64(base64);
+	@Override
+	public void close() {
+		super.close();
+		this.image.close();
 
-		if (image.getHeight() > image.getWidth()) {
-			return new TickingCape(path, base64, image, frameDelayMs, 1);
+		if (this.pixelsFreed) {
+			this.pixelsFreed = false;
+			freedPixelsSize.addAndGet(-this.size);
 		}
-		else {
-			return new Base64Texture(path, base64, image, 0);
+
+		if (this.png != null) {
+			reloadDataSize.addAndGet(-this.png.capacity());
+			MemoryUtil.memFree(this.png);
+			this.png = null;
 		}
 	}
 
-	public static Base64Texture cape(ResourceLocation path, String base64, int frameDelayMs) throws IOException {
-		NativeImage image = loadBase64(base64);
+	/**
+	 * Decode the base64 image data uri and create a texture from it with the given function. The decoded PNG and image are
+	 * freed if the texture can't be created.
+	 */
+	private static Base64Texture create(String base64, TextureFactory factory) throws IOException {
+		ByteBuffer png = Base64Decoder.decode(base64, HEADER_LENGTH);
+		NativeImage image = null;
 
-		if (image.getHeight() >= image.getWidth()) {
-			return new TickingCape(path, base64, image, frameDelayMs, 2);
-		}
-		else {
-			return new Base64Texture(path, base64, image, 0);
+		try {
+			image = NativeImage.read(png);
+			return factory.create(png, image);
+		} catch (IOException | RuntimeException e) {
+			if (image != null) image.close();
+			MemoryUtil.memFree(png);
+			throw e;
 		}
 	}
 
+	public static Base64Texture square(ResourceLocation path, String base64, int frameDelayMs) throws IOException {
+		return create(base64, (png, image) -> {
+			if (image.getHeight() > image.getWidth()) {
+				return new TickingCape(path, png, image, frameDelayMs, 1);
+			}
+			else {
+				return new Base64Texture(path, png, image, 0);
+			}
+		});
+	}
+
+	public static Base64Texture cape(ResourceLocation path, String base64, int frameDelayMs) throws IOException {
+		return create(base64, (png, image) -> {
+			if (image.getHeight() >= image.getWidth()) {
+				return new TickingCape(path, png, image, frameDelayMs, 2);
+			}
+			else {
+				return new Base64Texture(path, png, image, 0);
+			}
+		});
+	}
+
 	public static Base64Texture skin(ResourceLocation path, String base64) throws IOException {
-		return new Base64Texture(path, base64, loadBase64(base64), 0);
+		return create(base64, (png, image) -> new Base64Texture(path, png, image, 0));
+	}
+
+	/**
+	 * @return the number of bytes of PNG data held off-heap for reloading textures.
+	 */
+	public static long getReloadDataSize() {
+		return reloadDataSize.get();
+	}
+
+	/**
+	 * @return the number of bytes of decoded images freed after upload, which would otherwise be held off-heap.
+	 */
+	public static long getFreedPixelsSize() {
+		return freedPixelsSize.get();
 	}
 
 	private static class TickingCape extends Base64Texture implements Tickable {
-		private TickingCape(ResourceLocation path, String base64, NativeImage initialImage, int frameDelayMs, int aspectRatio) throws IOException {
-			super(path, base64, initialImage, aspectRatio);
+		private TickingCape(ResourceLocation path, ByteBuffer png, NativeImage initialImage, int frameDelayMs, int aspectRatio) throws IOException {
+			super(path, png, initialImage, aspectRatio);
 			this.frameCounterTicks = Math.max(1, frameDelayMs / 50);
 		}
 
@@ -131,4 +282,9 @@ public class Base64Texture extends AnimatedTexture {
 			this.doTick();
 		}
 	}
+
+	@FunctionalInterface
+	private interface TextureFactory {
+		Base64Texture create(ByteBuffer png, NativeImage image) throws IOException;
+	}
 }
@@ -20,8 +20,8 @@ import cc.cosmetica.cosmetica.Cosmetica;
 import cc.cosmetica.cosmetica.mixin.textures.NativeImageAccessorMixin;
 import com.mojang.blaze3d.platform.NativeImage;
 import com.mojang.blaze3d.platform.TextureUtil;
+import net.minecraft.Util;
 import net.minecraft.client.renderer.texture.HttpTexture;
-import net.minecraft.client.renderer.texture.Tickable;
 import net.minecraft.resources.ResourceLocation;
 import org.jetbrains.annotations.Nullable;
 
@@ -29,17 +29,15 @@ import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 
-public class CosmeticIconTexture extends HttpTexture implements Tickable {
+public class CosmeticIconTexture extends HttpTexture implements FrameSheet {
 	public CosmeticIconTexture(@Nullable File file, String url) {
 		super(file, url, new ResourceLocation("cosmetica", "textures/gui/loading.png"), false, null);
 		this.url = url;
 		this.indicators = new HashSet<>();
 	}
 
-	private int frameHeight;
 	private int frames;
-	private int frame;
-	private int tick;
+	private long animationStart;
 	private NativeImage image;
 	private final String url;
 	private final Set<String> indicators;
@@ -55,8 +53,7 @@ public class CosmeticIconTexture extends HttpTexture implements Tickable {
 		this.image = image;
 
 		this.frames = image.getHeight() / image.getWidth();
-		this.frameHeight = image.getHeight() / this.frames;
-		this.frame = 0;
+		this.animationStart = Util.getMillis();
 
 		try {
 			this.upload(image, !loading);
@@ -67,21 +64,24 @@ public class CosmeticIconTexture extends HttpTexture implements Tickable {
 	}
 
 	public void upload(NativeImage image, boolean close) {
-		TextureUtil.prepareImage(this.getId(), 0, image.getWidth(), this.frameHeight);
-		image.upload(0, 0, 0, 0, this.frameHeight * this.frame, image.getWidth(), this.frameHeight, this.blur, false, false, close);
+		// every frame is uploaded at once. Frames are selected when rendering
+		TextureUtil.prepareImage(this.getId(), 0, image.getWidth(), image.getHeight());
+		image.upload(0, 0, 0, 0, 0, image.getWidth(), image.getHeight(), this.blur, false, false, close);
 	}
 
 	@Override
-	public void tick() {
+	public int getFrameToRender() {
+		// animate while the image is still around, which is only the case for the loading image
 		if (this.frames > 1 && this.image != null && ((NativeImageAccessorMixin) (Object) this.image).getPixels() != 0) {
-			this.tick = (this.tick + 1) % 2;
-
-			if (this.tick == 0) {
-				this.frame = (this.frame + 1) % this.frames;
-				//Debug.info("Uploading frame {}", this.frame);
-				this.upload(this.image, false);
-			}
+			return (int) ((Util.getMillis() - this.animationStart) / 100 % this.frames);
 		}
+
+		return 0;
+	}
+
+	@Override
+	public int getSheetFrames() {
+		return Math.max(1, this.frames);
 	}
 
 	@Override
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica.utils.textures;
+
+import com.mojang.blaze3d.vertex.VertexConsumer;
+
+/**
+ * Maps texture coordinates in [0, 1] to [u0, u1] and [v0, v1], so geometry textured with a single frame samples one
+ * frame of a {@link FrameSheet}, which may itself be part of a larger texture such as the {@link ModelAtlas}.
+ */
+public class FrameSelectingVertexConsumer implements VertexConsumer {
+	public FrameSelectingVertexConsumer(VertexConsumer delegate, float u0, float v0, float u1, float v1) {
+		this.delegate = delegate;
+		this.u0 = u0;
+		this.uScale = u1 - u0;
+		this.v0 = v0;
+		this.vScale = v1 - v0;
+	}
+
+	private final VertexConsumer delegate;
+	private final float u0;
+	private final float uScale;
+	private final float v0;
+	private final float vScale;
+
+	@Override
+	public VertexConsumer vertex(double x, double y, double z) {
+		this.delegate.vertex(x, y, z);
+		return this;
+	}
+
+	@Override
+	public VertexConsumer color(int r, int g, int b, int a) {
+		this.delegate.color(r, g, b, a);
+		return this;
+	}
+
+	@Override
+	public VertexConsumer uv(float u, float v) {
+		this.delegate.uv(this.u0 + u * this.uScale, this.v0 + v * this.vScale);
+		return this;
+	}
+
+	@Override
+	public VertexConsumer overlayCoords(int u, int v) {
+		this.delegate.overlayCoords(u, v);
+		return this;
+	}
+
+	@Override
+	public VertexConsumer uv2(int u, int v) {
+		this.delegate.uv2(u, v);
+		return this;
+	}
+
+	@Override
+	public VertexConsumer normal(float x, float y, float z) {
+		this.delegate.normal(x, y, z);
+		return this;
+	}
+
+	@Override
+	public void endVertex() {
+		this.delegate.endVertex();
+	}
+
+	@Override
+	public void vertex(float x, float y, float z, float r, float g, float b, float a, float u, float v, int overlay, int light, float nx, float ny, float nz) {
+		this.delegate.vertex(x, y, z, r, g, b, a, this.u0 + u * this.uScale, this.v0 + v * this.vScale, overlay, light, nx, ny, nz);
+	}
+
+	@Override
+	public void defaultColor(int r, int g, int b, int a) {
+		this.delegate.defaultColor(r, g, b, a);
+	}
+
+	@Override
+	public void unsetDefaultColor() {
+		this.delegate.unsetDefaultColor();
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.cosmetica.cosmetica.utils.textures;
+
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.texture.AbstractTexture;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A texture made of frames stacked vertically, all uploaded to the GPU at once. Rather than uploading each frame as it
+ * comes up, the current frame is selected when rendering by remapping texture coordinates to the frame's part of the
+ * sheet.
+ */
+public interface FrameSheet {
+	/**
+	 * Get the frame to draw, noting that this texture has been drawn. Only call this when about to draw it.
+	 * @return the index of the frame in the sheet as uploaded.
+	 */
+	int getFrameToRender();
+
+	/**
+	 * @return the number of frames in the sheet as uploaded.
+	 */
+	int getSheetFrames();
+
+	/**
+	 * Get the frame sheet registered at the given location.
+	 * @return the frame sheet, or null if the texture there isn't one.
+	 */
+	@Nullable
+	static FrameSheet get(ResourceLocation location) {
+		AbstractTexture texture = Minecraft.getInstance().getTextureManager().getTexture(location, null);
+		return texture instanceof FrameSheet sheet ? sheet : null;
+	}
+
+	/**
+	 * Wrap the given consumer so that texture coordinates covering a single frame instead cover the current frame of the
+	 * texture at the given location. Returns the consumer unchanged if the texture there isn't a frame sheet.
+	 */
+	static VertexConsumer selectFrame(ResourceLocation location, VertexConsumer consumer) {
+		FrameSheet sheet = get(location);
+		if (sheet == null) return consumer;
+
+		int frame = sheet.getFrameToRender();
+		int frames = sheet.getSheetFrames();
+		return new FrameSelectingVertexConsumer(consumer, 0, (float) frame / frames, 1, (float) (frame + 1) / frames);
+	}
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2022, 2023 EyezahMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cc.cosmetica.cosmetica.utils.textures;
+
+import cc.cosmetica.cosmetica.utils.DebugMode;
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.platform.NativeImage;
+import com.mojang.blaze3d.platform.TextureUtil;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.texture.AbstractTexture;
+import net.minecraft.client.renderer.texture.TextureManager;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceManager;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Packs the textures of cosmetic models into one texture, so models with different textures are drawn in the same
+ * batch. Models are still baked with texture coordinates covering a single frame of their own texture, and these are
+ * remapped to the texture's region of the atlas when drawing, the same way frames are selected. This means regions can
+ * move when the atlas is repacked without baking any models again.<br>
+ * Textures are added the first time they are drawn, and their own GPU copy is evicted once they are in the atlas.
+ * Repacking copies the regions still in use from the old atlas on the GPU, so no texture is decoded again. Should only
+ * be used on the render thread.
+ */
+public class ModelAtlas {
+	public static final ResourceLocation LOCATION = new ResourceLocation("cosmetica", "atlas/models");
+	/**
+	 * The width and height of the atlas, if the GPU supports textures that large.
+	 */
+	private static final int REQUESTED_SIZE = Integer.parseInt(System.getProperty("cosmetica.modelAtlasSize", "2048"));
+	/**
+	 * Space left between regions, so rounding at the edge of a region never samples its neighbour.
+	 */
+	private static final int PADDING = 1;
+
+	private static final Map<ResourceLocation, Region> regions = new HashMap<>();
+	/**
+	 * Textures which are not in the atlas and shouldn't be tried again, as they didn't fit or can't be added.
+	 */
+	private static final Set<ResourceLocation> rejected = new HashSet<>();
+	private static final List<Shelf> shelves = new ArrayList<>();
+	@Nullable
+	private static Texture texture;
+	private static int size;
+	/**
+	 * The area left behind by textures removed since the atlas was last packed, which repacking would reclaim.
+	 */
+	private static long freedArea;
+
+	/**
+	 * Get the region of the atlas holding the texture at the given location, adding it if it isn't there yet.
+	 * @return the region, or null if the texture can't be drawn from the atlas.
+	 */
+	@Nullable
+	public static Region get(ResourceLocation location) {
+		Region region = regions.get(location);
+		if (region != null || rejected.contains(location)) return region;
+
+		AbstractTexture registered = Minecraft.getInstance().getTextureManager().getTexture(location, null);
+		if (registered == null) return null; // not uploaded yet
+
+		// only textures with every frame on the GPU select their frame by texture coordinates
+		if (!(registered instanceof Base64Texture sheet) || !sheet.isWholeSheetUploaded()) {
+			rejected.add(location);
+			return null;
+		}
+
+		if (texture == null) {
+			size = Math.min(REQUESTED_SIZE, RenderSystem.maxSupportedTextureSize());
+			texture = new Texture();
+			Minecraft.getInstance().getTextureManager().register(LOCATION, texture);
+		}
+
+		int width = sheet.image.getWidth();
+		int height = sheet.image.getHeight();
+		region = allocate(sheet, width, height);
+
+		if (region == null && freedArea >= (long) (width + PADDING) * (height + PADDING)) {
+			repack();
+			region = allocate(sheet, width, height);
+		}
+
+		if (region == null) {
+			DebugMode.log("Model texture {} doesn't fit in the atlas. Drawing it separately.", location);
+			rejected.add(location);
+			return null;
+		}
+
+		DebugMode.log("Adding model texture {} to the atlas at {},{}", location, region.x, region.y);
+		regions.put(location, region);
+		upload(region);
+		return region;
+	}
+
+	/**
+	 * Remove the texture at the given location from the atlas. Its space is reclaimed next time the atlas is repacked.
+	 */
+	public static void remove(ResourceLocation location) {
+		rejected.remove(location);
+		Region region = regions.remove(location);
+
+		if (region != null) {
+			freedArea += (long) (region.width + PADDING) * (region.height + PADDING);
+		}
+	}
+
+	public static void clear() {
+		regions.clear();
+		rejected.clear();
+		shelves.clear();
+		freedArea = 0;
+	}
+
+	/**
+	 * Report how many textures are in the atlas and how full it is.
+	 */
+	public static String getStats() {
+		long used = 0;
+
+		for (Region region : regions.values()) {
+			used += (long) region.width * region.height;
+		}
+
+		return "Model atlas: " + regions.size() + " textures, " + size + "x" + size
+				+ ", " + (size == 0 ? 0 : used * 100 / ((long) size * size)) + "% used"
+				+ ", " + freedArea * 4 / 1024 + " KiB reclaimable, " + rejected.size() + " drawn separately";
+	}
+
+	/**
+	 * Find space for a texture of the given size, placing it on the shelf it fits most tightly, or on a new shelf if it
+	 * would waste more than half of the best existing one.
+	 */
+	@Nullable
+	private static Region allocate(Base64Texture sheet, int width, int height) {
+		int paddedWidth = width + PADDING;
+		int paddedHeight = height + PADDING;
+		if (paddedWidth > size || paddedHeight > size) return null;
+
+		Shelf best = null;
+
+		for (Shelf shelf : shelves) {
+			if (shelf.height >= paddedHeight && shelf.nextX + paddedWidth <= size && (best == null || shelf.height < best.height)) {
+				best = shelf;
+			}
+		}
+
+		int top = shelves.isEmpty() ? 0 : shelves.get(shelves.size() - 1).y + shelves.get(shelves.size() - 1).height;
+
+		if (best == null || (best.height > paddedHeight * 2 && top + paddedHeight <= size)) {
+			if (top + paddedHeight > size) return null;
+
+			best = new Shelf(top, paddedHeight);
+			shelves.add(best);
+		}
+
+		Region region = new Region(sheet, best.nextX, best.y, width, height);
+		best.nextX += paddedWidth;
+		return region;
+	}
+
+	/**
+	 * Pack the textures still in use again from scratch, tallest first, and copy them into a new atlas.
+	 */
+	private static void repack() {
+		TextureManager textureManager = Minecraft.getInstance().getTextureManager();
+		List<Map.Entry<ResourceLocation, Region>> entries = new ArrayList<>(regions.entrySet());
+		entries.sort(Comparator.comparingInt((Map.Entry<ResourceLocation, Region> entry) -> entry.getValue().height).reversed());
+
+		DebugMode.log("Repacking model atlas, reclaiming {} pixels", freedArea);
+		regions.clear();
+		shelves.clear();
+		freedArea = 0;
+
+		int newId = TextureUtil.generateTextureId();
+		TextureUtil.prepareImage(newId, 0, size, size);
+
+		try (Blit blit = new Blit(texture.getId(), newId)) {
+			for (Map.Entry<ResourceLocation, Region> entry : entries) {
+				Region old = entry.getValue();
+				if (textureManager.getTexture(entry.getKey(), null) != old.sheet) continue; // no longer registered
+
+				Region region = allocate(old.sheet, old.width, old.height);
+
+				if (region == null) {
+					rejected.add(entry.getKey());
+				} else {
+					regions.put(entry.getKey(), region);
+					blit.copy(old, region);
+				}
+			}
+		}
+
+		texture.replaceId(newId);
+	}
+
+	private static void upload(Region region) {
+		NativeImage image = region.sheet.getRawImage();
+
+		texture.bind();
+		image.upload(0, region.x, region.y, 0, 0, region.width, region.height, false, false, false, false);
+
+		// drawn from the atlas from now on, so the texture's own copies aren't needed
+		region.sheet.releaseRawImage();
+		region.sheet.evict();
+	}
+
+	/**
+	 * A texture's place in the atlas, with the texture coordinates of its corners.
+	 */
+	public static final class Region {
+		private Region(Base64Texture sheet, int x, int y, int width, int height) {
+			this.sheet = sheet;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.u0 = (float) x / size;
+			this.v0 = (float) y / size;
+			this.u1 = (float) (x + width) / size;
+			this.v1 = (float) (y + height) / size;
+		}
+
+		private final Base64Texture sheet;
+		private final int x;
+		private final int y;
+		private final int width;
+		private final int height;
+		public final float u0;
+		public final float v0;
+		public final float u1;
+		public final float v1;
+	}
+
+	/**
+	 * Copies regions from one texture to another on the GPU, by attaching each to a framebuffer. The framebuffers bound
+	 * before, and the scissor test which would clip the copy, are restored when closed.
+	 */
+	private static final class Blit implements AutoCloseable {
+		private Blit(int from, int to) {
+			this.previousRead = GlStateManager._getInteger(GL30.GL_READ_FRAMEBUFFER_BINDING);
+			this.previousDraw = GlStateManager._getInteger(GL30.GL_DRAW_FRAMEBUFFER_BINDING);
+			this.scissor = GL11.glIsEnabled(GL11.GL_SCISSOR_TEST);
+
+			this.read = GlStateManager.glGenFramebuffers();
+			GlStateManager._glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, this.read);
+			GlStateManager._glFramebufferTexture2D(GL30.GL_READ_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D, from, 0);
+
+			this.draw = GlStateManager.glGenFramebuffers();
+			GlStateManager._glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, this.draw);
+			GlStateManager._glFramebufferTexture2D(GL30.GL_DRAW_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D, to, 0);
+
+			if (this.scissor) GlStateManager._disableScissorTest();
+		}
+
+		private final int previousRead;
+		private final int previousDraw;
+		private final boolean scissor;
+		private final int read;
+		private final int draw;
+
+		private void copy(Region from, Region to) {
+			GlStateManager._glBlitFrameBuffer(from.x, from.y, from.x + from.width, from.y + from.height,
+					to.x, to.y, to.x + to.width, to.y + to.height, GL11.GL_COLOR_BUFFER_BIT, GL11.GL_NEAREST);
+		}
+
+		@Override
+		public void close() {
+			GlStateManager._glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, this.previousRead);
+			GlStateManager._glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, this.previousDraw);
+			GlStateManager._glDeleteFramebuffers(this.read);
+			GlStateManager._glDeleteFramebuffers(this.draw);
+
+			if (this.scissor) GlStateManager._enableScissorTest();
+		}
+	}
+
+	private static final class Shelf {
+		private Shelf(int y, int height) {
+			this.y = y;
+			this.height = height;
+		}
+
+		private final int y;
+		private final int height;
+		private int nextX;
+	}
+
+	private static class Texture extends AbstractTexture {
+		private boolean allocated;
+
+		@Override
+		public void load(ResourceManager resourceManager) {
+			// also called when resources are reloaded, which keeps the texture's id and so what was uploaded to it
+			if (this.allocated) return;
+			this.allocated = true;
+
+			if (RenderSystem.isOnRenderThreadOrInit()) {
+				TextureUtil.prepareImage(this.getId(), 0, size, size);
+			} else {
+				RenderSystem.recordRenderCall(() -> TextureUtil.prepareImage(this.getId(), 0, size, size));
+			}
+		}
+
+		/**
+		 * Switch to the given texture id, freeing the one in use.
+		 */
+		private void replaceId(int id) {
+			TextureUtil.releaseTextureId(this.id);
+			this.id = id;
+		}
+	}
+}
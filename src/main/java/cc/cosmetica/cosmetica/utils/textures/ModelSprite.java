@@ -17,7 +17,6 @@
 package cc.cosmetica.cosmetica.utils.textures;
 
 import cc.cosmetica.cosmetica.utils.DebugMode;
-import com.mojang.blaze3d.platform.NativeImage;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.texture.TextureAtlas;
@@ -34,14 +33,17 @@ public class ModelSprite extends TextureAtlasSprite {
 	}
 
 	private ModelSprite(ResourceLocation location, cc.cosmetica.cosmetica.utils.textures.AnimatedTexture texture, int width, int height) {
-		// textureAtlas, info, mipLevels, uScale (atlasTextureWidth), vScale (atlasTextureHeight), width, height, image
+		// textureAtlas, info, mipLevels, uScale (atlasTextureWidth), vScale (atlasTextureHeight), x, y, image
+		// UVs span [0, 1] over a single frame. The current frame is selected when rendering (see FrameSheet)
+		// the sprite is never uploaded, so no mip levels are generated. This way its pixels are never read, and it can be
+		// created off the render thread
 		super(null,
 				new Info(location, width, height, null),
-				Math.min(4, getMaximumMipmapLevels(texture.image)),
-				width,
-				height,
+				0,
 				width,
 				height,
+				0,
+				0,
 				texture.image
 		);
 
@@ -104,20 +106,4 @@ public class ModelSprite extends TextureAtlasSprite {
 	public Tickable getAnimationTicker() {
 		return this.animatedTexture instanceof Tickable ? (Tickable) this.animatedTexture : null;
 	}
-
-	private static int getMaximumMipmapLevels(NativeImage image) {
-		return log2(Math.min(image.getWidth(), image.getHeight()));
-	}
-
-	// Fast, Integer Log2
-	private static int log2(int in) {
-		int i = 0;
-
-		while (in > 1) {
-			i++;
-			in >>= 1;
-		}
-
-		return i;
-	}
 }